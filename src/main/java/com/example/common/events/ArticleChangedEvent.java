@@ -0,0 +1,58 @@
+package com.example.common.events;
+
+import com.example.entity.Article;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 文章变更事件
+ * 由ArticleService在写操作后发布，缓存等派生数据在事务提交后据此失效或重建
+ */
+@Getter
+public class ArticleChangedEvent {
+
+    public enum Type {
+        SAVED,          // 新增或编辑
+        STATE_CHANGED,  // 状态变更（放入回收站、还原、发布）
+        DELETED         // 彻底删除
+    }
+
+    private final Type type;
+    private final List<Long> aids;
+    private final Long uid;         // 执行操作的作者
+    private final Article article;  // 单篇保存的SAVED事件携带保存后的文章
+    private final Integer state;    // 仅STATE_CHANGED事件携带新状态
+    private final boolean draft;    // 草稿合并写回正文，不是作者的显式保存
+
+    private ArticleChangedEvent(Type type, List<Long> aids, Long uid, Article article, Integer state, boolean draft) {
+        this.type = type;
+        this.aids = aids;
+        this.uid = uid;
+        this.article = article;
+        this.state = state;
+        this.draft = draft;
+    }
+
+    public static ArticleChangedEvent saved(Article article) {
+        return new ArticleChangedEvent(Type.SAVED, List.of(article.getId()), article.getUid(), article, article.getState(), false);
+    }
+
+    // 批量导入时一次提交多篇文章，不携带文章内容
+    public static ArticleChangedEvent imported(List<Long> aids, Long uid) {
+        return new ArticleChangedEvent(Type.SAVED, aids, uid, null, null, false);
+    }
+
+    // 草稿合并写回正文，不携带文章内容，与显式保存区分
+    public static ArticleChangedEvent edited(Long aid, Long uid) {
+        return new ArticleChangedEvent(Type.SAVED, List.of(aid), uid, null, null, true);
+    }
+
+    public static ArticleChangedEvent stateChanged(List<Long> aids, Long uid, Integer state) {
+        return new ArticleChangedEvent(Type.STATE_CHANGED, aids, uid, null, state, false);
+    }
+
+    public static ArticleChangedEvent deleted(List<Long> aids, Long uid) {
+        return new ArticleChangedEvent(Type.DELETED, aids, uid, null, null, false);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.common.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 二进制差量编码
+ * 把源内容按固定长度分块建立哈希索引，用滚动哈希扫描目标内容，
+ * 命中的区间输出COPY(源偏移, 长度)，其余字节输出ADD(字面量)。
+ * 编码格式：目标长度(varint)，之后依次为指令：
+ * 0 + 长度(varint) + 字节 表示ADD，1 + 源偏移(varint) + 长度(varint) 表示COPY。
+ */
+public class BinaryDelta {
+    private BinaryDelta() {
+
+    }
+
+    private static final int BLOCK = 16;
+    private static final int BASE = 257;
+    private static final byte OP_ADD = 0;
+    private static final byte OP_COPY = 1;
+    // BASE^(BLOCK-1)，滚动时移除窗口首字节用
+    private static final int POW;
+
+    static {
+        int p = 1;
+        for (int i = 0; i < BLOCK - 1; i++) {
+            p *= BASE;
+        }
+        POW = p;
+    }
+
+    /**
+     * 计算把source变为target的差量
+     */
+    public static byte[] encode(byte[] source, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(16, target.length / 8));
+        writeVarint(out, target.length);
+        Map<Integer, Integer> index = indexBlocks(source);
+        int n = target.length;
+        int literalStart = 0;
+        int i = 0;
+        int hash = n >= BLOCK ? hash(target, 0) : 0;
+        while (i + BLOCK <= n) {
+            Integer candidate = index.get(hash);
+            if (candidate != null && Arrays.equals(source, candidate, candidate + BLOCK, target, i, i + BLOCK)) {
+                int srcStart = candidate;
+                int tgtStart = i;
+                // 向前扩展到尚未输出的字面量中
+                while (srcStart > 0 && tgtStart > literalStart && source[srcStart - 1] == target[tgtStart - 1]) {
+                    srcStart--;
+                    tgtStart--;
+                }
+                int srcEnd = candidate + BLOCK;
+                int tgtEnd = i + BLOCK;
+                while (srcEnd < source.length && tgtEnd < n && source[srcEnd] == target[tgtEnd]) {
+                    srcEnd++;
+                    tgtEnd++;
+                }
+                writeAdd(out, target, literalStart, tgtStart);
+                out.write(OP_COPY);
+                writeVarint(out, srcStart);
+                writeVarint(out, tgtEnd - tgtStart);
+                literalStart = tgtEnd;
+                i = tgtEnd;
+                if (i + BLOCK <= n) {
+                    hash = hash(target, i);
+                }
+                continue;
+            }
+            if (i + BLOCK < n) {
+                hash = (hash - (target[i] & 0xff) * POW) * BASE + (target[i + BLOCK] & 0xff);
+            }
+            i++;
+        }
+        writeAdd(out, target, literalStart, n);
+        return out.toByteArray();
+    }
+
+    /**
+     * 在source上应用差量，还原目标内容
+     */
+    public static byte[] apply(byte[] source, byte[] delta) {
+        int[] pos = {0};
+        int length = readVarint(delta, pos);
+        byte[] target = new byte[length];
+        int written = 0;
+        while (pos[0] < delta.length) {
+            byte op = delta[pos[0]++];
+            if (op == OP_ADD) {
+                int len = readVarint(delta, pos);
+                System.arraycopy(delta, pos[0], target, written, len);
+                pos[0] += len;
+                written += len;
+            } else if (op == OP_COPY) {
+                int offset = readVarint(delta, pos);
+                int len = readVarint(delta, pos);
+                System.arraycopy(source, offset, target, written, len);
+                written += len;
+            } else {
+                throw new IllegalArgumentException("无效的差量指令: " + op);
+            }
+        }
+        if (written != length) {
+            throw new IllegalArgumentException("差量数据不完整");
+        }
+        return target;
+    }
+
+    // 只索引块对齐位置，同一哈希保留第一次出现的位置
+    private static Map<Integer, Integer> indexBlocks(byte[] source) {
+        Map<Integer, Integer> index = new HashMap<>(Math.max(16, source.length / BLOCK * 2));
+        for (int p = 0; p + BLOCK <= source.length; p += BLOCK) {
+            index.putIfAbsent(hash(source, p), p);
+        }
+        return index;
+    }
+
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int k = start; k < start + BLOCK; k++) {
+            h = h * BASE + (data[k] & 0xff);
+        }
+        return h;
+    }
+
+    private static void writeAdd(ByteArrayOutputStream out, byte[] data, int from, int to) {
+        if (to > from) {
+            out.write(OP_ADD);
+            writeVarint(out, to - from);
+            out.write(data, from, to - from);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = data[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.common.utils;
+
+import com.example.entity.Article;
+import com.example.entity.Tag;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 条件请求的ETag生成
+ * 文章详情使用弱ETag，由文章ID、editTime、状态和排序后的标签ID计算（移入回收站、还原、发布等只修改状态，不更新editTime）；
+ * gzip和原文两种表示共用同一个ETag，按规范只能是弱ETag；
+ * 列表页使用弱ETag，由页内文章的ID与editTime以及分页信息计算。
+ * 列表ETag要在查询之后才能得到，命中304时只省去响应体的序列化和传输，不减少数据库查询。
+ */
+public class ETagUtil {
+    private ETagUtil() {
+
+    }
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    // 摘要截取的字节数，足以区分同一资源的不同版本
+    private static final int DIGEST_BYTES = 12;
+
+    /**
+     * 文章详情的弱ETag
+     *
+     * @param tagIds 升序排列并以逗号连接的标签ID，没有标签时为空字符串
+     */
+    public static String articleETag(Long aid, Timestamp editTime, Integer state, String tagIds) {
+        long millis = editTime == null ? 0 : editTime.getTime();
+        int nanos = editTime == null ? 0 : editTime.getNanos();
+        return "W/\"" + aid + "-" + digest(millis + ":" + nanos + ":" + state + ":" + (tagIds == null ? "" : tagIds)) + "\"";
+    }
+
+    public static String articleETag(Article article) {
+        return articleETag(article.getId(), article.getEditTime(), article.getState(), joinTagIds(article.getTags()));
+    }
+
+    /**
+     * 文章列表的弱ETag，浏览量等统计字段的变化不影响列表的语义
+     *
+     * @param extra 影响响应内容的其他信息，如总数和下一页游标
+     */
+    public static String listETag(Collection<Article> articles, Object... extra) {
+        StringBuilder sb = new StringBuilder(articles.size() * 24 + 16);
+        for (Article article : articles) {
+            Timestamp editTime = article.getEditTime();
+            sb.append(article.getId()).append('@')
+                    .append(editTime == null ? 0 : editTime.getTime()).append(';');
+        }
+        for (Object o : extra) {
+            sb.append('|').append(o);
+        }
+        return "W/\"" + digest(sb.toString()) + "\"";
+    }
+
+    /**
+     * 把标签ID升序排列后以逗号连接，与数据库GROUP_CONCAT(tid ORDER BY tid)的结果一致
+     */
+    public static String joinTagIds(List<Tag> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return "";
+        }
+        return tags.stream().map(Tag::getId).sorted().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private static String digest(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            byte[] head = new byte[DIGEST_BYTES];
+            System.arraycopy(hash, 0, head, 0, DIGEST_BYTES);
+            return ENCODER.encodeToString(head);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.common.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 把文件写入响应
+ * Tomcat连接器支持sendfile时只设置请求属性，由连接器在请求结束后直接从文件发送到socket（零拷贝）；
+ * 否则使用FileChannel.transferTo写入响应输出流，目标不是FileChannel或SocketChannel，
+ * transferTo会先把文件读入临时缓冲再写入输出流的堆内缓冲，仍有拷贝，只是不用一次性把文件读入内存。
+ */
+public class FileResponseUtil {
+    private FileResponseUtil() {
+
+    }
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 发送文件的[start, start + length)区间，调用方需先设置状态码和其他响应头
+     * 使用sendfile时文件在方法返回后才被读取，调用方不能立即删除该文件
+     */
+    public static void sendFile(HttpServletRequest request, HttpServletResponse response,
+                                Path file, long start, long length) throws IOException {
+        response.setContentLengthLong(length);
+        if (length == 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+        // 回退路径：按块复制到Servlet输出流
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+        response.flushBuffer();
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.common.utils;
+
+import java.util.Map;
+
+/**
+ * HTML文本处理
+ * 单遍扫描的状态机：跳过标签、注释以及script/style的内容，解码字符实体，
+ * 收集到所需字符数后立即停止，不生成中间字符串。
+ */
+public class HtmlUtil {
+    private HtmlUtil() {
+
+    }
+
+    // 实体名最长字符数（不含&和;）
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    private static final Map<String, Character> NAMED_ENTITIES = Map.ofEntries(
+            Map.entry("nbsp", ' '),
+            Map.entry("lt", '<'),
+            Map.entry("gt", '>'),
+            Map.entry("amp", '&'),
+            Map.entry("quot", '"'),
+            Map.entry("apos", '\''),
+            Map.entry("ldquo", '“'),
+            Map.entry("rdquo", '”'),
+            Map.entry("lsquo", '‘'),
+            Map.entry("rsquo", '’'),
+            Map.entry("mdash", '—'),
+            Map.entry("ndash", '–'),
+            Map.entry("hellip", '…'),
+            Map.entry("middot", '·'),
+            Map.entry("times", '×'),
+            Map.entry("copy", '©'),
+            Map.entry("reg", '®')
+    );
+
+    /**
+     * 去掉HTML标签，保留文本内容
+     */
+    public static String stripHtml(String content) {
+        return extractText(content, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 提取HTML中的文本，最多返回maxChars个字符
+     */
+    public static String extractText(String html, int maxChars) {
+        if (html == null || maxChars <= 0) {
+            return "";
+        }
+        int len = html.length();
+        StringBuilder out = new StringBuilder(Math.min(len, maxChars));
+        int i = 0;
+        while (i < len && out.length() < maxChars) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                int next = skipMarkup(html, i);
+                if (next > i) {
+                    i = next;
+                    continue;
+                }
+                out.append(c);
+                i++;
+            } else if (c == '&') {
+                i = decodeEntity(html, i, out);
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        if (out.length() > maxChars) {
+            // 补充平面字符可能多追加一个char，截断时不拆开代理对
+            int end = maxChars;
+            if (Character.isHighSurrogate(out.charAt(end - 1))) {
+                end--;
+            }
+            out.setLength(end);
+        }
+        return out.toString();
+    }
+
+    /**
+     * 跳过从start开始的标签、注释或声明
+     *
+     * @return 标记之后的位置；start处的'<'不构成标记时返回start
+     */
+    private static int skipMarkup(String html, int start) {
+        int len = html.length();
+        if (start + 1 >= len) {
+            return start;
+        }
+        if (html.startsWith("<!--", start)) {
+            int end = html.indexOf("-->", start + 4);
+            return end < 0 ? len : end + 3;
+        }
+        char next = html.charAt(start + 1);
+        boolean closing = next == '/';
+        if (!(isAsciiLetter(next) || closing || next == '!' || next == '?')) {
+            // 形如"a < b"的普通文本
+            return start;
+        }
+        int p = closing ? start + 2 : start + 1;
+        int nameStart = p;
+        while (p < len && isTagNameChar(html.charAt(p))) {
+            p++;
+        }
+        int nameEnd = p;
+        // 跳过属性直到'>'，引号内的'>'不结束标签
+        char quote = 0;
+        while (p < len) {
+            char ch = html.charAt(p);
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                }
+            } else if (ch == '"' || ch == '\'') {
+                quote = ch;
+            } else if (ch == '>') {
+                break;
+            }
+            p++;
+        }
+        int end = p < len ? p + 1 : len;
+        if (!closing && (nameEquals(html, nameStart, nameEnd, "script") || nameEquals(html, nameStart, nameEnd, "style"))) {
+            // script/style的内容不是正文，直接跳到对应的结束标签之后
+            int close = indexOfIgnoreCase(html, "</" + html.substring(nameStart, nameEnd), end);
+            if (close < 0) {
+                return len;
+            }
+            int gt = html.indexOf('>', close);
+            return gt < 0 ? len : gt + 1;
+        }
+        return end;
+    }
+
+    /**
+     * 解码从start开始的字符实体并写入out
+     *
+     * @return 实体之后的位置；不是合法实体时原样输出'&'
+     */
+    private static int decodeEntity(String html, int start, StringBuilder out) {
+        int limit = Math.min(html.length(), start + MAX_ENTITY_LENGTH + 2);
+        int semicolon = -1;
+        for (int p = start + 1; p < limit; p++) {
+            char ch = html.charAt(p);
+            if (ch == ';') {
+                semicolon = p;
+                break;
+            }
+            if (!Character.isLetterOrDigit(ch) && ch != '#') {
+                break;
+            }
+        }
+        if (semicolon > start + 1) {
+            if (html.charAt(start + 1) == '#') {
+                int codePoint = parseCodePoint(html, start + 2, semicolon);
+                if (codePoint >= 0) {
+                    out.appendCodePoint(codePoint);
+                    return semicolon + 1;
+                }
+            } else {
+                Character decoded = NAMED_ENTITIES.get(html.substring(start + 1, semicolon));
+                if (decoded != null) {
+                    out.append(decoded.charValue());
+                    return semicolon + 1;
+                }
+            }
+        }
+        out.append('&');
+        return start + 1;
+    }
+
+    private static int parseCodePoint(String html, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        int radix = 10;
+        if (html.charAt(from) == 'x' || html.charAt(from) == 'X') {
+            radix = 16;
+            from++;
+        }
+        try {
+            int codePoint = Integer.parseInt(html, from, to, radix);
+            return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int indexOfIgnoreCase(String html, String target, int from) {
+        int last = html.length() - target.length();
+        for (int p = from; p <= last; p++) {
+            if (html.charAt(p) == '<' && html.regionMatches(true, p, target, 0, target.length())) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean nameEquals(String html, int start, int end, String name) {
+        return end - start == name.length() && html.regionMatches(true, start, name, 0, name.length());
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isTagNameChar(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == ':';
+    }
+}
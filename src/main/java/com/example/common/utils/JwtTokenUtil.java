@@ -1,65 +1,131 @@
 package com.example.common.utils;
 
 import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTCreator;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTCreationException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.entity.Role;
+import com.example.entity.User;
 
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JwtTokenUtil {
     private static final long EXPIRATION_TIME = 1000*60*60;
     private static final String SECRET_KEY = "askjhdsu@1.sd5163213hdfbasjdf";
+    // 算法和验证器不可变且线程安全，全局共用，不必每次请求重新创建
+    private static final Algorithm ALGORITHM = Algorithm.HMAC256(SECRET_KEY);
+    private static final JWTVerifier VERIFIER = JWT.require(ALGORITHM).build();
+
+    // 已验证通过的token，过期时间到达后不再使用；同一token在有效期内只需验证一次签名
+    // 直接以token为键：DecodedJWT本身就持有token原文，再计算SHA-256作键与HMAC签名验证的开销相当，抵消了缓存的收益
+    private static final int MAX_VERIFIED = 10000;
+    private static final ConcurrentHashMap<String, Verified> VERIFIED = new ConcurrentHashMap<>();
+
+    private record Verified(DecodedJWT jwt, long expiresAt) {
+    }
+
+    // 无状态认证使用的声明：用户ID、角色名和签发时用户的认证版本号
+    private static final String CLAIM_UID = "uid";
+    private static final String CLAIM_ROLES = "roles";
+    private static final String CLAIM_VERSION = "ver";
 
     /**
-     * 生成 JWT Token 的方法
-     * @param username 用户名
+     * 生成携带用户ID和角色的 JWT Token，验证时不必查询数据库即可得到当前用户
+     * @param user 用户，需包含角色
+     * @param version 用户当前的认证版本号，版本号变化后该Token失效
      * @return 生成的 JWT Token
      */
-    public static String generateToken(String username) {
-        try{// 创建 HMAC256 算法实例，使用定义的密钥
-            Algorithm algorithm = Algorithm.HMAC256(SECRET_KEY);
-            // 创建 JWT 构建器
-            JWTCreator.Builder builder = JWT.create();
-            // 设置 JWT 的主题为用户名
-            builder.withSubject(username);
-            // 设置 JWT 的过期时间为当前时间加上定义的过期时长
-            builder.withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME));
-            // 使用算法对 JWT 进行签名并生成 Token
-            return builder.sign(algorithm);
-        }catch(JWTCreationException e){
-            throw new JWTCreationException("token生成失败",new Throwable("token生成失败"));
+    public static String generateToken(User user, long version) {
+        try {
+            List<String> roles = user.getRoles() == null ? List.of() : user.getRoles().stream().map(Role::getName).toList();
+            return JWT.create()
+                    .withSubject(user.getUsername())
+                    .withClaim(CLAIM_UID, user.getId())
+                    .withClaim(CLAIM_ROLES, roles)
+                    .withClaim(CLAIM_VERSION, version)
+                    .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
+                    .sign(ALGORITHM);
+        } catch (JWTCreationException e) {
+            throw new JWTCreationException("token生成失败", new Throwable("token生成失败"));
         }
     }
 
+    /**
+     * 由Token中的声明构造用户，不含密码、邮箱等未写入Token的信息
+     * @return Token中没有用户ID（旧格式的Token）时返回null
+     */
+    public static User toUser(DecodedJWT jwt) {
+        Claim uid = jwt.getClaim(CLAIM_UID);
+        if (uid.isMissing() || uid.isNull()) {
+            return null;
+        }
+        List<String> names = jwt.getClaim(CLAIM_ROLES).asList(String.class);
+        User user = new User();
+        user.setId(uid.asLong());
+        user.setUsername(jwt.getSubject());
+        user.setEnabled(true);
+        user.setRoles(names == null ? List.of() : names.stream().map(name -> new Role(null, name)).toList());
+        return user;
+    }
+
+    /**
+     * Token签发时的认证版本号，旧格式的Token返回null
+     */
+    public static Long getVersion(DecodedJWT jwt) {
+        return jwt.getClaim(CLAIM_VERSION).asLong();
+    }
+
     /**
      * 验证 JWT Token 的方法
      * @param token 待验证的 JWT Token
      * @return 如果验证通过，返回解析后的 JWT；否则返回 null
      */
     public static DecodedJWT validateToken(String token) {
+        long now = System.currentTimeMillis();
+        Verified cached = VERIFIED.get(token);
+        if (cached != null) {
+            if (cached.expiresAt() > now) {
+                return cached.jwt();
+            }
+            VERIFIED.remove(token, cached);
+        }
+        DecodedJWT jwt;
         try {
-            Algorithm algorithm = Algorithm.HMAC256(SECRET_KEY);
-            JWTVerifier verifier = JWT.require(algorithm).build();
-            return verifier.verify(token);
+            jwt = VERIFIER.verify(token);
         } catch (JWTVerificationException e) {
             // 验证失败，可能是签名无效、过期等原因
             throw new JWTVerificationException("token验证失败");
         }
+        // 没有过期时间的token不缓存
+        Date expiresAt = jwt.getExpiresAt();
+        if (expiresAt != null) {
+            if (VERIFIED.size() >= MAX_VERIFIED) {
+                VERIFIED.values().removeIf(v -> v.expiresAt() <= now);
+                // 仍然已满时全部清空，避免之后每次都遍历；被清掉的token下次重新验证即可
+                if (VERIFIED.size() >= MAX_VERIFIED) {
+                    VERIFIED.clear();
+                }
+            }
+            VERIFIED.put(token, new Verified(jwt, expiresAt.getTime()));
+        }
+        return jwt;
     }
 
     /**
      * @param oldToken 待更新的Token
+     * @param user 当前用户，新Token按其角色签发
+     * @param version 用户当前的认证版本号
      * */
-    public static String refreshToken(String oldToken) {
+    public static String refreshToken(String oldToken, User user, long version) {
         try{
             DecodedJWT decodedJWT = validateToken(oldToken);
-            if (decodedJWT != null) {
-                String username = decodedJWT.getSubject();
-                return generateToken(username);
+            if (decodedJWT != null && user.getUsername().equals(decodedJWT.getSubject())) {
+                return generateToken(user, version);
             }
         } catch (JWTCreationException e) {
             throw new JWTCreationException("token更新失败",new Throwable("token更新失败"));
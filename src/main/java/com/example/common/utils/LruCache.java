@@ -0,0 +1,135 @@
+package com.example.common.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按权重限制容量的进程内LRU缓存
+ * 总权重超过上限时按最近最少使用顺序淘汰，可选写入后过期
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, Node<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxWeight;
+    private final long expireAfterWriteMillis;
+    private final ToLongFunction<V> weigher;
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxWeight              总权重上限
+     * @param expireAfterWriteMillis 写入后过期时间，小于等于0表示不过期
+     * @param weigher                计算单个值的权重
+     */
+    public LruCache(long maxWeight, long expireAfterWriteMillis, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+        this.weigher = weigher;
+    }
+
+    /**
+     * 按条目数限制容量
+     */
+    public LruCache(int maxSize, long expireAfterWriteMillis) {
+        this(maxSize, expireAfterWriteMillis, _ -> 1);
+    }
+
+    public synchronized V get(K key) {
+        Node<V> node = map.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (node.expireAt > 0 && node.expireAt < System.currentTimeMillis()) {
+            removeNode(key);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return node.value;
+    }
+
+    /**
+     * 查询但不计入命中统计
+     */
+    public synchronized V peek(K key) {
+        Node<V> node = map.get(key);
+        if (node == null || (node.expireAt > 0 && node.expireAt < System.currentTimeMillis())) {
+            return null;
+        }
+        return node.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        long w = Math.max(1, weigher.applyAsLong(value));
+        if (w > maxWeight) {
+            // 单个值超过容量上限时不缓存
+            removeNode(key);
+            return;
+        }
+        long expireAt = expireAfterWriteMillis > 0 ? System.currentTimeMillis() + expireAfterWriteMillis : 0;
+        Node<V> old = map.put(key, new Node<>(value, w, expireAt));
+        if (old != null) {
+            weight -= old.weight;
+        }
+        weight += w;
+        evictIfNeeded();
+    }
+
+    public synchronized V remove(K key) {
+        Node<V> node = removeNode(key);
+        return node == null ? null : node.value;
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private Node<V> removeNode(K key) {
+        Node<V> node = map.remove(key);
+        if (node != null) {
+            weight -= node.weight;
+        }
+        return node;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<K, Node<V>>> iterator = map.entrySet().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            Map.Entry<K, Node<V>> eldest = iterator.next();
+            iterator.remove();
+            weight -= eldest.getValue().weight;
+            evictions.increment();
+        }
+    }
+
+    private record Node<V>(V value, long weight, long expireAt) {
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.common.utils;
+
+import com.example.common.exceptions.BadRequestException;
+import com.example.entity.Article;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * 文章列表游标，对应排序键(editTime, id)
+ * 对外以不透明的Base64字符串传递，客户端只需原样带回
+ */
+public record PageCursor(Timestamp editTime, Long id) {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * 以当前页最后一篇文章生成下一页游标
+     */
+    public static String encode(Article last) {
+        Timestamp editTime = last.getEditTime();
+        // 单独保存纳秒部分，避免DATETIME(6)等高精度列比较时丢行
+        String raw = editTime.getTime() + ":" + editTime.getNanos() + ":" + last.getId();
+        return ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，空字符串表示第一页，返回null
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(DECODER.decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("游标格式错误");
+            }
+            Timestamp editTime = new Timestamp(Long.parseLong(parts[0]));
+            editTime.setNanos(Integer.parseInt(parts[1]));
+            return new PageCursor(editTime, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(400, "无效的分页游标");
+        }
+    }
+}
@@ -2,13 +2,29 @@ package com.example.common.utils;
 
 
 import com.example.common.enums.BusinessType;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * <p>
@@ -98,6 +114,11 @@ public class RedisUtil {
         redisTemplate.delete(key);
     }
 
+    // 批量删除键
+    public void delete(Collection<String> keys) {
+        redisTemplate.delete(keys);
+    }
+
     // 判断键是否存在
     public Boolean hasKey(String key) {
         return redisTemplate.hasKey(key);
@@ -108,6 +129,101 @@ public class RedisUtil {
         redisTemplate.opsForValue().decrement(key);
     }
 
+    // 增量（INCRBY），返回增加后的值
+    public Long increment(String key, long delta) {
+        return redisTemplate.opsForValue().increment(key, delta);
+    }
+
+    // 获取哈希字段
+    public Object hGet(String key, String field) {
+        return redisTemplate.opsForHash().get(key, field);
+    }
+
+    // 设置哈希字段
+    public void hPut(String key, String field, Object value) {
+        redisTemplate.opsForHash().put(key, field, value);
+    }
+
+    // 设置过期时间
+    public Boolean expire(String key, long duration, TimeUnit unit) {
+        return redisTemplate.expire(key, duration, unit);
+    }
+
+    // 获取集合的全部成员
+    public Set<Object> sMembers(String key) {
+        return redisTemplate.opsForSet().members(key);
+    }
+
+    // 添加集合成员
+    public Long sAdd(String key, Object... values) {
+        return redisTemplate.opsForSet().add(key, values);
+    }
+
+    // 移除集合成员
+    public Long sRemove(String key, Object... values) {
+        return redisTemplate.opsForSet().remove(key, values);
+    }
+
+    // 按分数从高到低获取有序集合的成员及分数
+    public Set<ZSetOperations.TypedTuple<Object>> zRevRangeWithScores(String key, long start, long end) {
+        return redisTemplate.opsForZSet().reverseRangeWithScores(key, start, end);
+    }
+
+    // 执行Lua脚本，参数和返回值按值序列化器处理
+    public <T> T executeScript(String script, Class<T> resultType, List<String> keys, Object... args) {
+        DefaultRedisScript<T> redisScript = new DefaultRedisScript<>(script, resultType);
+        return redisTemplate.execute(redisScript, keys, args);
+    }
+
+    // 在MULTI/EXEC事务中执行多条命令，返回各命令的结果
+    public List<Object> executeInTransaction(Consumer<RedisOperations<String, Object>> commands) {
+        return redisTemplate.execute(new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.multi();
+                commands.accept(ops);
+                return ops.exec();
+            }
+        });
+    }
+
+    // 以管道方式批量发送命令，只需一次网络往返，返回各命令的结果
+    public List<Object> executePipelined(Consumer<RedisOperations<String, Object>> commands) {
+        return redisTemplate.executePipelined(new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                commands.accept((RedisOperations<String, Object>) operations);
+                return null;
+            }
+        });
+    }
+
+    // HyperLogLog基数估计，多个key时返回并集的基数
+    public Long pfCount(String... keys) {
+        return redisTemplate.opsForHyperLogLog().size(keys);
+    }
+
+    // 向Stream追加一条记录，返回记录ID
+    public String xAdd(String key, Map<String, Object> fields) {
+        RecordId id = redisTemplate.opsForStream().add(StreamRecords.newRecord().in(key).ofMap(fields));
+        return id == null ? null : id.getValue();
+    }
+
+    // 读取Stream中指定ID之后的记录，不含该ID
+    public List<MapRecord<String, Object, Object>> xReadAfter(String key, String afterId, long count) {
+        return redisTemplate.opsForStream().read(StreamReadOptions.empty().count(count),
+                StreamOffset.create(key, ReadOffset.from(afterId)));
+    }
+
+    // 删除Stream中ID小于minId的记录（XTRIM MINID，需要Redis 6.2及以上）
+    public Long xTrimMinId(String key, String minId) {
+        return redisTemplate.execute((RedisCallback<Long>) connection -> (Long) connection.execute("XTRIM",
+                key.getBytes(StandardCharsets.UTF_8), "MINID".getBytes(StandardCharsets.UTF_8), minId.getBytes(StandardCharsets.UTF_8)));
+    }
+
     // 如果不存在，则设置
     public Boolean setNx(String key, Object value) {
         return redisTemplate.opsForValue().setIfAbsent(key, value);
@@ -128,7 +244,8 @@ public class RedisUtil {
         DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
         redisScript.setScriptText(RELEASE_SCRIPT);
         redisScript.setResultType(Long.class);
-        Long result = redisTemplate.execute(redisScript, Collections.singletonList(lockKey), Collections.singletonList(requestId));
+        // requestId直接作为参数，与加锁时写入的值按同样方式序列化后比较
+        Long result = redisTemplate.execute(redisScript, Collections.singletonList(lockKey), requestId);
         return RELEASE_SUCCESS.equals(result);
     }
 }
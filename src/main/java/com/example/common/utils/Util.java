@@ -2,7 +2,15 @@ package com.example.common.utils;
 
 import com.example.entity.User;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 public class Util {
     private Util() {
@@ -12,6 +20,31 @@ public class Util {
         return (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
     }
 
+    /**
+     * 当前访客的标识，用于独立访客统计
+     * 已登录时为用户ID；否则为客户端IP和User-Agent的摘要，不保存原始IP
+     *
+     * @return 不在请求线程中时返回null
+     */
+    public static String getVisitorId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            return "u" + user.getId();
+        }
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return null;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        // 不直接读取X-Forwarded-For，客户端可以任意伪造；部署在反向代理后时由server.forward-headers-strategy只信任内网代理改写remoteAddr
+        String fingerprint = request.getRemoteAddr() + "|" + request.getHeader("User-Agent");
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fingerprint.getBytes(StandardCharsets.UTF_8));
+            return "f" + HexFormat.of().formatHex(digest, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * @return 业务类型
      */
@@ -1,12 +1,14 @@
 package com.example.controller;
 
-import com.example.entity.Article;
+import com.example.entity.ArticlePage;
 import com.example.entity.Result;
+import com.example.service.ArticleDetailCache;
+import com.example.service.ArticlePayloadCache;
 import com.example.service.ArticleService;
+import com.example.service.ArticleSnapshotService;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -16,20 +18,50 @@ import java.util.Map;
 @RequestMapping("/admin")
 public class AdminController {
     final ArticleService articleService;
+    final ArticleDetailCache articleDetailCache;
+    final ArticlePayloadCache articlePayloadCache;
+    final ArticleSnapshotService articleSnapshotService;
 
-    public AdminController(ArticleService articleService) {
+    public AdminController(ArticleService articleService, ArticleDetailCache articleDetailCache,
+                           ArticlePayloadCache articlePayloadCache, ArticleSnapshotService articleSnapshotService) {
         this.articleService = articleService;
+        this.articleDetailCache = articleDetailCache;
+        this.articlePayloadCache = articlePayloadCache;
+        this.articleSnapshotService = articleSnapshotService;
     }
 
     @GetMapping(value = "/article/all")
-    public Map<String, Object> getArticleByStateByAdmin(@RequestParam(value = "page", defaultValue = "1") Integer page, @RequestParam(value = "count", defaultValue = "6") Integer count, String keywords) {
-        List<Article> articles = articleService.getArticleByState(-2, page, count, keywords);
+    public Map<String, Object> getArticleByStateByAdmin(@RequestParam(value = "page", defaultValue = "1") Integer page, @RequestParam(value = "count", defaultValue = "6") Integer count, String keywords,
+                                                        @RequestParam(value = "cursor", required = false) String cursor) {
         Map<String, Object> map = new HashMap<>();
-        map.put("articles", articles);
-        map.put("totalCount", articleService.getArticleCountByState(1, null, keywords));
+        if (cursor != null) {
+            ArticlePage articlePage = articleService.getArticlePageByCursor(-2, cursor, count, keywords);
+            map.put("articles", articlePage.getArticles());
+            map.put("nextCursor", articlePage.getNextCursor());
+            map.put("totalCount", articlePage.getTotalCount());
+        } else {
+            ArticlePage articlePage = articleService.getArticlePage(-2, page, count, keywords);
+            map.put("articles", articlePage.getArticles());
+            map.put("totalCount", articlePage.getTotalCount());
+        }
         return map;
     }
 
+    @GetMapping(value = "/cache/article")
+    public Map<String, Object> articleCacheStats() {
+        return articleDetailCache.stats();
+    }
+
+    @GetMapping(value = "/cache/article-payload")
+    public Map<String, Object> articlePayloadCacheStats() {
+        return articlePayloadCache.stats();
+    }
+
+    @GetMapping(value = "/cache/article-snapshot")
+    public Map<String, Object> articleSnapshotStats() {
+        return articleSnapshotService.stats();
+    }
+
     @PutMapping(value = "/article/dustbin")
     public Result<?> updateArticleState(Long[] aids, Integer state) {
         return Result.success("删除成功!");
@@ -1,13 +1,43 @@
 package com.example.controller;
 
+import com.example.common.exceptions.BadRequestException;
 import com.example.common.exceptions.BusinessException;
 import com.example.entity.Article;
+import com.example.entity.ArticlePage;
+import com.example.entity.ArticleDraft;
+import com.example.entity.ArticleRevision;
+import com.example.entity.ArticleValidator;
+import com.example.entity.ArticleVote;
+import com.example.entity.DraftPatch;
 import com.example.entity.Result;
+import com.example.entity.TransferProgress;
+import com.example.service.ArticleDraftService;
+import com.example.service.ArticlePayloadCache;
+import com.example.service.ArticleRevisionService;
 import com.example.service.ArticleService;
+import com.example.service.ArticleSnapshotService;
+import com.example.common.utils.ETagUtil;
 import com.example.common.utils.Util;
+import com.example.service.ArticleTransferService;
+import com.example.service.ArticleVoteService;
+import com.example.service.MediaService;
+import com.example.service.TrendingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,10 +47,41 @@ import java.util.Map;
 @RequestMapping("/article")
 public class ArticleController {
 
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson;charset=UTF-8";
+    // 允许浏览器缓存，但每次使用前都要带校验信息向服务端确认
+    private static final String REVALIDATE = CacheControl.noCache().cachePrivate().getHeaderValue();
+
     private final ArticleService articleService;
+    private final ArticleTransferService articleTransferService;
+    private final ArticlePayloadCache articlePayloadCache;
+    private final ArticleSnapshotService articleSnapshotService;
+    private final ArticleDraftService articleDraftService;
+    private final ArticleRevisionService articleRevisionService;
+    private final TrendingService trendingService;
+    private final ArticleVoteService articleVoteService;
+    private final MediaService mediaService;
+    private final ObjectMapper objectMapper;
 
-    public ArticleController(ArticleService articleService) {
+    public ArticleController(ArticleService articleService,
+                             ArticleTransferService articleTransferService,
+                             ArticlePayloadCache articlePayloadCache,
+                             ArticleSnapshotService articleSnapshotService,
+                             ArticleDraftService articleDraftService,
+                             ArticleRevisionService articleRevisionService,
+                             TrendingService trendingService,
+                             ArticleVoteService articleVoteService,
+                             MediaService mediaService,
+                             ObjectMapper objectMapper) {
         this.articleService = articleService;
+        this.articleTransferService = articleTransferService;
+        this.articlePayloadCache = articlePayloadCache;
+        this.articleSnapshotService = articleSnapshotService;
+        this.articleDraftService = articleDraftService;
+        this.articleRevisionService = articleRevisionService;
+        this.trendingService = trendingService;
+        this.articleVoteService = articleVoteService;
+        this.mediaService = mediaService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/")
@@ -29,25 +90,82 @@ public class ArticleController {
         return Result.success("文章添加成功", article.getId());
     }
 
+    /**
+     * 批量导入文章，请求体为NDJSON，每写入一块返回一行进度
+     */
+    @PostMapping("/import")
+    public void importArticles(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        ServletOutputStream out = response.getOutputStream();
+        articleTransferService.importArticles(request.getInputStream(), Util.getCurrentUser().getId(),
+                progress -> writeProgress(out, progress));
+    }
+
+    /**
+     * 导出当前用户的全部文章为NDJSON
+     */
+    @GetMapping("/export")
+    public void exportArticles(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setHeader("Content-Disposition", "attachment; filename=\"articles.ndjson\"");
+        articleTransferService.exportArticles(Util.getCurrentUser().getId(), response.getOutputStream());
+    }
+
+    private void writeProgress(ServletOutputStream out, TransferProgress progress) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(progress));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 上传图片，返回按内容摘要生成的稳定地址，相同图片重复上传返回同一地址
+     */
     @PostMapping("/uploadimg")
-    public Result<?> uploadImg() {
-        // 这里可以添加一些基本的参数验证
-        // 实际逻辑需要调整
-        return Result.success("图片上传成功", "图片地址");
+    public Result<String> uploadImg(@RequestParam("image") MultipartFile image) throws IOException {
+        if (image.isEmpty()) {
+            throw new BadRequestException(400, "上传的图片为空");
+        }
+        try (InputStream in = image.getInputStream()) {
+            MediaService.StoredImage stored = mediaService.store(in, image.getSize());
+            log.info("图片上传成功，用户ID: {}，摘要: {}，大小: {}，新文件: {}",
+                    Util.getCurrentUser().getId(), stored.hash(), stored.size(), stored.created());
+            return Result.success("图片上传成功", stored.url());
+        }
     }
 
     @GetMapping("/all")
     public Map<String, Object> getArticleByState(@RequestParam(value = "state", defaultValue = "-1") Integer state,
                                                  @RequestParam(value = "page", defaultValue = "1") Integer page,
                                                  @RequestParam(value = "count", defaultValue = "6") Integer count,
-                                                 @RequestParam(value = "keywords", required = false) String keywords) {
+                                                 @RequestParam(value = "keywords", required = false) String keywords,
+                                                 @RequestParam(value = "cursor", required = false) String cursor,
+                                                 WebRequest webRequest,
+                                                 HttpServletResponse response) {
         try {
-            List<Article> articles = articleService.getArticleByState(state, page, count, keywords);
-            int totalCount = articleService.getArticleCountByState(state, Util.getCurrentUser().getId(), keywords);
             Map<String, Object> map = new HashMap<>();
-            map.put("totalCount", totalCount);
-            map.put("articles", articles);
+            ArticlePage articlePage;
+            if (cursor != null) {
+                // 传入cursor时使用游标分页，page参数仅为兼容旧的页码分页保留
+                articlePage = articleService.getArticlePageByCursor(state, cursor, count, keywords);
+                map.put("nextCursor", articlePage.getNextCursor());
+            } else {
+                articlePage = articleService.getArticlePage(state, page, count, keywords);
+            }
+            map.put("articles", articlePage.getArticles());
+            map.put("totalCount", articlePage.getTotalCount());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, REVALIDATE);
+            // 列表内容未变化时返回304，省去响应体的序列化和传输；ETag由查询结果计算，查询本身不能省去
+            String etag = ETagUtil.listETag(articlePage.getArticles(), articlePage.getTotalCount(), articlePage.getNextCursor());
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
             return map;
+        } catch (BusinessException | BadRequestException e) {
+            throw e;
         } catch (Exception e) {
             log.error("获取文章列表时发生错误", e);
             throw new BusinessException(500, "给文章添加标签时出现异常");
@@ -55,9 +173,147 @@ public class ArticleController {
         }
     }
 
+    /**
+     * 热门文章，按时间衰减后的阅读量排序
+     *
+     * @param window 时间窗口：1h、24h或7d
+     */
+    @GetMapping("/trending")
+    public List<Article> getTrending(@RequestParam(value = "window", defaultValue = "24h") String window,
+                                     @RequestParam(value = "count", defaultValue = "10") Integer count) {
+        return trendingService.getTrending(window, count);
+    }
+
+    /**
+     * 文章详情，支持If-None-Match和If-Modified-Since条件请求
+     * 先只查询校验信息，客户端缓存仍然有效时直接返回304，不加载正文；
+     * 已发布文章优先发送静态快照文件，其次按Accept-Encoding写出预编码的字节，最后才走动态序列化
+     */
     @GetMapping("/{aid}")
-    public Article getArticleById(@PathVariable Long aid) {
-        return articleService.getArticleById(aid);
+    public ResponseEntity<?> getArticleById(@PathVariable Long aid, WebRequest webRequest,
+                                            HttpServletRequest request, HttpServletResponse response,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) throws IOException {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, REVALIDATE);
+        ArticleValidator validator = articleService.getArticleValidator(aid);
+        if (validator != null && webRequest.checkNotModified(validator.getETag(), validator.getLastModified())) {
+            articleService.recordPageView(aid);
+            return null;
+        }
+        ArticleSnapshotService.Snapshot snapshot = articleSnapshotService.find(aid, validator == null ? null : validator.getETag());
+        if (snapshot != null) {
+            articleService.recordPageView(aid);
+            articleSnapshotService.send(snapshot, request, response);
+            return null;
+        }
+        if (articlePayloadCache.isEnabled()) {
+            ArticlePayloadCache.Payload payload = articlePayloadCache.get(aid);
+            if (payload == null) {
+                return ResponseEntity.ok().build();
+            }
+            // 文章存在时才计数，不存在的ID不会进入浏览量和访客缓冲区
+            articleService.recordPageView(aid);
+            // 以实际返回的内容为准，校验信息查询之后文章可能又被修改
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .eTag(payload.etag())
+                    .lastModified(payload.lastModified());
+            if (articlePayloadCache.chooseGzip(payload, acceptEncoding)) {
+                return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.gzip());
+            }
+            return builder.body(payload.identity());
+        }
+        Article article = articleService.getArticleById(aid);
+        if (article == null) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.ok()
+                .eTag(ETagUtil.articleETag(article))
+                .lastModified(article.getEditTime() == null ? -1 : article.getEditTime().getTime())
+                .body(article);
+    }
+
+    /**
+     * 相关文章，按标签共现的加权Jaccard相似度排序
+     */
+    @GetMapping("/{aid}/related")
+    public List<Article> getRelatedArticles(@PathVariable Long aid,
+                                            @RequestParam(value = "count", defaultValue = "5") Integer count) {
+        return articleService.getRelatedArticles(aid, count);
+    }
+
+    /**
+     * 当前赞踩数及当前用户的投票
+     */
+    @GetMapping("/{aid}/vote")
+    public ArticleVote getVote(@PathVariable Long aid) {
+        return articleVoteService.getVote(aid);
+    }
+
+    /**
+     * 赞（1）或踩（-1），重复投同一票取消，投另一票改投，0为取消
+     */
+    @PostMapping("/{aid}/vote")
+    public Result<ArticleVote> vote(@PathVariable Long aid, @RequestParam("value") Integer value) {
+        return Result.success("投票成功", articleVoteService.vote(aid, value));
+    }
+
+    /**
+     * 自己文章的浏览量统计，granularity为day（最近7天）或hour（最近24小时）
+     */
+    @GetMapping("/{aid}/statistics")
+    public Map<String, Object> getArticleStatistics(@PathVariable Long aid,
+                                                    @RequestParam(value = "granularity", defaultValue = "day") String granularity) {
+        return articleService.getArticleStatistics(aid, granularity);
+    }
+
+    /**
+     * 自己文章最近几天每天的独立访客数，键为日期
+     */
+    @GetMapping("/{aid}/visitors")
+    public Map<String, Long> getArticleVisitors(@PathVariable Long aid,
+                                                @RequestParam(value = "days", defaultValue = "7") Integer days) {
+        return articleService.getArticleVisitors(aid, days);
+    }
+
+    /**
+     * 获取自动保存的草稿及其版本号，编辑器据此计算后续补丁
+     */
+    @GetMapping("/{aid}/draft")
+    public ArticleDraft getDraft(@PathVariable Long aid) {
+        return articleDraftService.getDraft(aid);
+    }
+
+    /**
+     * 自动保存，只提交相对于baseRevision的增量补丁，版本不一致时返回409
+     */
+    @PatchMapping("/{aid}/draft")
+    public Result<?> patchDraft(@PathVariable Long aid, @RequestBody DraftPatch patch) {
+        return Result.success("草稿已保存", articleDraftService.applyPatch(aid, patch));
+    }
+
+    /**
+     * 立即把草稿写回文章
+     */
+    @PostMapping("/{aid}/draft/save")
+    public Result<?> saveDraft(@PathVariable Long aid) {
+        return Result.success("草稿已写回文章", articleDraftService.save(aid).getRevision());
+    }
+
+    /**
+     * 文章的历史版本列表，不含内容
+     */
+    @GetMapping("/{aid}/revisions")
+    public List<ArticleRevision> getRevisions(@PathVariable Long aid) {
+        return articleRevisionService.getRevisions(aid);
+    }
+
+    /**
+     * 重建指定历史版本的内容
+     */
+    @GetMapping("/{aid}/revisions/{revision}")
+    public ArticleRevision getRevision(@PathVariable Long aid, @PathVariable Integer revision) {
+        return articleRevisionService.getRevision(aid, revision);
     }
 
     @PutMapping("/dustbin")
@@ -72,20 +328,12 @@ public class ArticleController {
         return Result.success("文章还原成功", null);
     }
 
+    /**
+     * 浏览量和独立访客统计，granularity为day（最近days天，可选7、30、90）或hour（最近24小时）
+     */
     @RequestMapping("/dataStatistics")
-    public Map<String, Object> dataStatistics() {
-        try {
-            Map<String, Object> map = new HashMap<>();
-            List<String> categories = articleService.getCategories();
-            List<Integer> dataStatistics = articleService.getDataStatistics();
-            map.put("categories", categories);
-            map.put("ds", dataStatistics);
-            return map;
-        } catch (Exception e) {
-            log.error("获取数据统计信息时发生错误", e);
-            throw new BusinessException(500, "给文章添加标签时出现异常");
-
-//            return Collections.emptyMap();
-        }
+    public Map<String, Object> dataStatistics(@RequestParam(value = "granularity", defaultValue = "day") String granularity,
+                                              @RequestParam(value = "days", defaultValue = "7") Integer days) {
+        return articleService.getDataStatistics(granularity, days);
     }
 }
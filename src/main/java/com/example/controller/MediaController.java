@@ -0,0 +1,40 @@
+package com.example.controller;
+
+import com.example.service.ImageVariantService;
+import com.example.service.MediaService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * 上传图片的访问地址，匿名可访问
+ */
+@RestController
+@RequestMapping("/media")
+public class MediaController {
+    private final MediaService mediaService;
+    private final ImageVariantService imageVariantService;
+
+    public MediaController(MediaService mediaService, ImageVariantService imageVariantService) {
+        this.mediaService = mediaService;
+        this.imageVariantService = imageVariantService;
+    }
+
+    // 同时处理HEAD请求；指定w时返回该宽度的缩略图
+    @GetMapping("/{name:.+}")
+    public void getImage(@PathVariable String name,
+                         @RequestParam(value = "w", required = false) Integer width,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (width == null) {
+            mediaService.send(name, request, response);
+        } else {
+            imageVariantService.send(name, width, request, response);
+        }
+    }
+}
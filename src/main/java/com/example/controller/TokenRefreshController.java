@@ -1,13 +1,22 @@
 package com.example.controller;
 
 import com.example.entity.Result;
+import com.example.entity.User;
 import com.example.common.utils.JwtTokenUtil;
+import com.example.common.utils.Util;
+import com.example.service.UserService;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
 public class TokenRefreshController {
+    private final UserService userService;
+
+    public TokenRefreshController(UserService userService) {
+        this.userService = userService;
+    }
+
     /**
      * 若旧token暴露，攻击者反而会使用该接口不断获取新token认证
      * 因此，需使用https协议，防止token暴露
@@ -17,7 +26,10 @@ public class TokenRefreshController {
         try {
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
                 String oldToken = authHeader.replace("Bearer ", "");
-                String newToken = JwtTokenUtil.refreshToken(oldToken);
+                // 旧Token已由认证过滤器验证，新Token按当前用户的角色和认证版本号签发
+                User user = Util.getCurrentUser();
+                Long version = userService.getAuthVersion(user.getId());
+                String newToken = version == null ? null : JwtTokenUtil.refreshToken(oldToken, user, version);
                 if (newToken != null) {
                     return new Result<>(200,"success", "Bearer " + newToken);
                 } else {
@@ -35,7 +35,9 @@ public class UserController {
 
     @RequestMapping("/currentUserEmail")
     public String currentUserEmail() {
-        return Util.getCurrentUser().getEmail();
+        // 无状态认证时当前用户由Token构造，不含邮箱
+        User user = userService.getUserById(Util.getCurrentUser().getId());
+        return user == null ? null : user.getEmail();
     }
 
     @RequestMapping("/isAdmin")
@@ -1,5 +1,6 @@
 package com.example.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import java.sql.Timestamp;
@@ -26,4 +27,6 @@ public class Article {
     private String stateStr;
     private Integer likeCount; // 新增点赞数
     private Integer dislikeCount; // 新增踩数
+    @JsonIgnore
+    private Integer totalCount; // 列表查询时窗口函数返回的总条数
 }
@@ -0,0 +1,16 @@
+package com.example.entity;
+
+import lombok.*;
+
+/**
+ * 自动保存的草稿内容
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArticleDraft {
+    private Long aid;
+    private long revision;      // 草稿版本号，每应用一次补丁加1
+    private String mdContent;
+    private String htmlContent;
+}
@@ -0,0 +1,17 @@
+package com.example.entity;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * 文章列表分页结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArticlePage {
+    private List<Article> articles;
+    private Integer totalCount;
+    private String nextCursor; // 游标分页时下一页的游标，没有下一页时为null
+}
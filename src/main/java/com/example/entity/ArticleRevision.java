@@ -0,0 +1,35 @@
+package com.example.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.sql.Timestamp;
+
+/**
+ * 文章历史版本
+ * kind为0时data是完整内容的压缩快照，为1时data是相对上一版本的压缩差量；
+ * baseRevision是重建该版本时起始的快照版本号
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ArticleRevision {
+    public static final int KIND_SNAPSHOT = 0;
+    public static final int KIND_DELTA = 1;
+
+    private Long id;
+    private Long aid;
+    private Integer revision;
+    private Integer kind;
+    private Integer baseRevision;
+    private String title;
+    private Timestamp editTime;
+    private Integer contentSize;    // 还原后的内容字节数
+    private Integer storedSize;     // data的字节数
+    @JsonIgnore
+    private byte[] data;
+    private String mdContent;       // 仅重建指定版本时返回
+    private String htmlContent;
+}
@@ -0,0 +1,15 @@
+package com.example.entity;
+
+import lombok.*;
+
+/**
+ * 文章与标签的关联
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArticleTag {
+    private Long aid;
+    private Long tid;
+    private String tagName;
+}
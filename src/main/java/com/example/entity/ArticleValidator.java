@@ -0,0 +1,27 @@
+package com.example.entity;
+
+import com.example.common.utils.ETagUtil;
+import lombok.*;
+
+import java.sql.Timestamp;
+
+/**
+ * 文章详情的条件请求校验信息，只包含计算ETag和Last-Modified所需的字段
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArticleValidator {
+    private Long id;
+    private Timestamp editTime;
+    private Integer state;
+    private String tagIds; // 升序排列、逗号分隔的标签ID
+
+    public String getETag() {
+        return ETagUtil.articleETag(id, editTime, state, tagIds);
+    }
+
+    public long getLastModified() {
+        return editTime == null ? -1 : editTime.getTime();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 文章的赞踩数及当前用户的投票
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArticleVote {
+    public static final int LIKE = 1;
+    public static final int DISLIKE = -1;
+    public static final int NONE = 0;
+
+    private Long aid;
+    // 当前用户的投票：1为赞，-1为踩，0为未投票
+    private Integer vote;
+    private Integer likeCount;
+    private Integer dislikeCount;
+}
@@ -0,0 +1,27 @@
+package com.example.entity;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * 草稿增量补丁
+ * 基于baseRevision版本的内容，按顺序应用各项编辑；偏移量以UTF-16字符计，相对于前一项编辑之后的文本
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DraftPatch {
+    private Long baseRevision;
+    private List<Edit> edits;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Edit {
+        private String field;       // mdContent或htmlContent
+        private int offset;         // 起始位置
+        private int deleteCount;    // 删除的字符数
+        private String text;        // 插入的文本，可以为空
+    }
+}
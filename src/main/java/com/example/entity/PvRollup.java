@@ -0,0 +1,24 @@
+package com.example.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+/**
+ * 按小时或按天汇总的浏览量，id为文章ID或作者ID
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PvRollup {
+    public static final int HOUR = 0;
+    public static final int DAY = 1;
+
+    private Long id;
+    private Integer granularity;
+    private Timestamp bucket;
+    private Long pv;
+    private Long uv;
+}
@@ -0,0 +1,17 @@
+package com.example.entity;
+
+import lombok.*;
+
+/**
+ * 批量导入进度
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferProgress {
+    private long lines;      // 已读取的行数
+    private long imported;   // 已导入的文章数
+    private long failed;     // 失败的行数
+    private String error;    // 最近一次失败的原因
+    private boolean done;    // 是否已全部处理完
+}
@@ -26,6 +26,9 @@ public class User implements UserDetails {
     private String email;
     private String userface;
     private Timestamp regTime;
+    // 认证版本号，禁用、删除、修改角色或密码时加一
+    @JsonIgnore
+    private Long authVersion;
 
 //    @Override
 //    @JsonIgnore
@@ -1,10 +1,15 @@
 package com.example.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.annotations.Param;
 import com.example.entity.Article;
+import com.example.entity.ArticleValidator;
+import com.example.entity.ArticleVote;
 
+import java.sql.Timestamp;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by sang on 2017/12/20.
@@ -13,10 +18,21 @@ import java.util.List;
 public interface ArticleMapper {
     int addNewArticle(Article article);
 
+    /**
+     * @param baseEditTime 不为null时只在editTime仍等于该值时更新
+     */
+    int updateArticleContent(@Param("article") Article article, @Param("baseEditTime") Timestamp baseEditTime);
+
+    int addNewArticles(@Param("articles") List<Article> articles);
+
     int updateArticle(Article article);
 
     List<Article> getArticleByState(@Param("state") Integer state, @Param("start") Integer start, @Param("count") Integer count, @Param("uid") Long uid,@Param("keywords") String keywords);
 
+    List<Article> getArticleByStateWithTotal(@Param("state") Integer state, @Param("start") Integer start, @Param("count") Integer count, @Param("uid") Long uid, @Param("keywords") String keywords);
+
+    List<Article> getArticleByStateAfter(@Param("state") Integer state, @Param("cursorTime") Timestamp cursorTime, @Param("cursorId") Long cursorId, @Param("count") Integer count, @Param("uid") Long uid, @Param("keywords") String keywords);
+
 //    List<Article> getArticleByStateByAdmin(@Param("start") int start, @Param("count") Integer count, @Param("keywords") String keywords);
 
     int getArticleCountByState(@Param("state") Integer state, @Param("uid") Long uid, @Param("keywords") String keywords);
@@ -29,12 +45,25 @@ public interface ArticleMapper {
 
     Article getArticleById(Long aid);
 
-    void pvIncrement(Long aid);
+    List<Article> getArticleListByIds(@Param("aids") List<Long> aids);
+
+    // 全文索引对账用，只取id、uid、state、editTime
+    List<Article> getArticleStamps();
+
+    // 相关文章索引用，不关联分类表，分类被删除的文章同样返回
+    List<Article> getArticleStampsByIds(@Param("aids") List<Long> aids);
+
+    List<Article> getArticlesForIndex(@Param("aids") List<Long> aids);
+
+    Cursor<Article> streamArticlesByUid(Long uid);
+
+    ArticleValidator getArticleValidator(Long aid);
+
+    List<Article> getArticleOwners(@Param("aids") List<Long> aids);
 
-    //INSERT INTO pv(countDate,pv,uid) SELECT NOW(),SUM(pageView),uid FROM article GROUP BY uid
-    void pvStatisticsPerDay();
+    int pvIncrementBatch(@Param("deltas") Map<Long, Long> deltas);
 
-    List<String> getCategories(Long uid);
+    ArticleVote getVoteCounts(Long aid);
 
-    List<Integer> getDataStatistics(Long uid);
+    int updateVoteCountsBatch(@Param("votes") List<ArticleVote> votes);
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.example.mapper;
+
+import com.example.entity.ArticleRevision;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface ArticleRevisionMapper {
+    int addRevision(ArticleRevision revision);
+
+    List<ArticleRevision> getRevisionsByAid(Long aid);
+
+    ArticleRevision getLatestRevision(Long aid);
+
+    List<ArticleRevision> getRevisionChain(@Param("aid") Long aid, @Param("revision") Integer revision);
+
+    int deleteRevisionsByAid(Long aid);
+}
@@ -0,0 +1,40 @@
+package com.example.mapper;
+
+import com.example.entity.PvRollup;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Mapper
+public interface PvRollupMapper {
+    String getWatermark(String name);
+
+    // 水位不存在时插入，已存在（被其他实例先插入）时返回0
+    int insertWatermark(@Param("name") String name, @Param("lastId") String lastId);
+
+    // 水位仍为previous时更新为lastId，否则返回0
+    int advanceWatermark(@Param("name") String name, @Param("previous") String previous, @Param("lastId") String lastId);
+
+    int addArticleRollups(@Param("rollups") List<PvRollup> rollups);
+
+    int addUserRollups(@Param("rollups") List<PvRollup> rollups);
+
+    int saveUserUv(@Param("rollups") List<PvRollup> rollups);
+
+    List<PvRollup> getArticleRollups(@Param("aid") Long aid, @Param("granularity") Integer granularity,
+                                     @Param("from") Timestamp from);
+
+    List<PvRollup> getUserRollups(@Param("uid") Long uid, @Param("granularity") Integer granularity,
+                                  @Param("from") Timestamp from);
+
+    // 全部作者指定时间之后的汇总，用于加载内存中的作者统计
+    List<PvRollup> getUserRollupsSince(@Param("granularity") Integer granularity, @Param("from") Timestamp from);
+
+    int deleteArticleRollups(Long aid);
+
+    int deleteArticleHourlyBefore(Timestamp before);
+
+    int deleteUserHourlyBefore(Timestamp before);
+}
@@ -1,8 +1,11 @@
 package com.example.mapper;
 
+import com.example.entity.ArticleTag;
+import com.example.entity.Tag;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -10,11 +13,21 @@ import java.util.List;
  */
 @Mapper
 public interface TagMapper {
-    int deleteTagsByAid(Long aid);
-
     int saveTags(@Param("tags") String[] tags);
 
-    List<Long> getTagsIdByTagName(@Param("tagNames") String[] tagNames);
+    List<Tag> getTagsByTagName(@Param("tagNames") Collection<String> tagNames);
+
+    List<Tag> getTagsByIds(@Param("ids") Collection<Long> ids);
 
     int saveTags2ArticleTags(@Param("tagIds") List<Long> tagIds, @Param("aid") Long aid);
+
+    List<Long> getTagIdsByAid(Long aid);
+
+    List<ArticleTag> getAllArticleTags();
+
+    int saveArticleTagsBatch(@Param("links") List<ArticleTag> links);
+
+    int deleteArticleTags(@Param("aid") Long aid, @Param("tagIds") List<Long> tagIds);
+
+    List<ArticleTag> getTagsByAids(@Param("aids") List<Long> aids);
 }
\ No newline at end of file
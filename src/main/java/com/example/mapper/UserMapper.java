@@ -34,4 +34,8 @@ public interface UserMapper {
     User getUserById(@Param("id") Long id);
 
     User getUserByEmail(@Param("email") String email);
+
+    Long getAuthVersion(@Param("id") Long id);
+
+    int incrementAuthVersion(@Param("id") Long id);
 }
\ No newline at end of file
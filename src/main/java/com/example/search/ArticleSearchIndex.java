@@ -0,0 +1,442 @@
+package com.example.search;
+
+import com.example.common.events.ArticleChangedEvent;
+import com.example.common.utils.HtmlUtil;
+import com.example.entity.Article;
+import com.example.mapper.ArticleMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 文章全文检索倒排索引
+ * 对标题、摘要和去标签后的正文做中日韩二元分词，按BM25打分，标题和摘要的词频加权。
+ * 由文章变更事件增量维护，定期持久化到本地文件；启动时加载文件后与数据库的(id, editTime, state)对账，
+ * 只重建有变化的文章。索引就绪前调用方应回退到数据库查询。
+ */
+@Slf4j
+@Component
+public class ArticleSearchIndex {
+
+    private static final int FILE_MAGIC = 0x53534249; // "SSBI"
+    private static final int FILE_VERSION = 1;
+    private static final int TITLE_WEIGHT = 3;
+    private static final int SUMMARY_WEIGHT = 2;
+    private static final int BODY_WEIGHT = 1;
+    // 正文只索引前若干字符，限制单篇文章占用的内存
+    private static final int MAX_BODY_CHARS = 50_000;
+    private static final int RELOAD_BATCH_SIZE = 200;
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    private final ArticleMapper articleMapper;
+    private final boolean enabled;
+    private final Path indexFile;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IndexedDoc> docs = new HashMap<>();
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private long totalLength;
+    private volatile boolean ready;
+    private volatile boolean dirty;
+
+    public ArticleSearchIndex(ArticleMapper articleMapper,
+                              @Value("${blog.search.enabled:true}") boolean enabled,
+                              @Value("${blog.search.index-file:./data/search/article-index.bin}") String indexFile) {
+        this.articleMapper = articleMapper;
+        this.enabled = enabled;
+        this.indexFile = Paths.get(indexFile);
+    }
+
+    /**
+     * 检索结果
+     *
+     * @param aids  当前页的文章ID，按相关度排序
+     * @param total 满足条件的文章总数
+     */
+    public record SearchResult(List<Long> aids, int total) {
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 检索文章，所有查询词都必须命中
+     *
+     * @param uid   作者ID，为null时不限作者
+     * @param state 文章状态，为null时不限状态
+     */
+    public SearchResult search(String keywords, Long uid, Integer state, int start, int count) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(CjkBigramTokenizer.tokenizeQuery(keywords)));
+        if (terms.isEmpty()) {
+            return new SearchResult(List.of(), 0);
+        }
+        List<ScoredDoc> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<TermPostings> termPostings = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<Long, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    return new SearchResult(List.of(), 0);
+                }
+                termPostings.add(new TermPostings(posting, idf(posting.size())));
+            }
+            // 从最短的倒排表开始求交集
+            termPostings.sort(Comparator.comparingInt(tp -> tp.posting.size()));
+            double avgLength = docs.isEmpty() ? 1 : (double) totalLength / docs.size();
+            for (Long aid : termPostings.getFirst().posting.keySet()) {
+                IndexedDoc doc = docs.get(aid);
+                if (doc == null || !doc.matches(uid, state)) {
+                    continue;
+                }
+                double score = 0;
+                boolean matchAll = true;
+                for (TermPostings tp : termPostings) {
+                    Integer tf = tp.posting.get(aid);
+                    if (tf == null) {
+                        matchAll = false;
+                        break;
+                    }
+                    score += tp.idf * tf * (BM25_K1 + 1)
+                            / (tf + BM25_K1 * (1 - BM25_B + BM25_B * doc.length / avgLength));
+                }
+                if (matchAll) {
+                    hits.add(new ScoredDoc(aid, score, doc.editTime));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Comparator.comparingDouble(ScoredDoc::score).reversed()
+                .thenComparing(Comparator.comparingLong(ScoredDoc::editTime).reversed()));
+        int from = Math.min(Math.max(start, 0), hits.size());
+        int to = Math.min(from + Math.max(count, 0), hits.size());
+        List<Long> aids = new ArrayList<>(to - from);
+        for (ScoredDoc hit : hits.subList(from, to)) {
+            aids.add(hit.aid);
+        }
+        return new SearchResult(aids, hits.size());
+    }
+
+    public int count(String keywords, Long uid, Integer state) {
+        return search(keywords, uid, state, 0, 0).total();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArticleChanged(ArticleChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            switch (event.getType()) {
+                // 重新从数据库读取，以提交后的标题、状态为准
+                case SAVED -> reindex(event.getAids());
+                case STATE_CHANGED -> updateState(event.getAids(), event.getState());
+                case DELETED -> remove(event.getAids());
+            }
+        } catch (Exception e) {
+            log.error("更新全文索引失败，文章ID: {}", event.getAids(), e);
+        }
+    }
+
+    // 启动后在后台加载索引，不阻塞应用启动
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread.ofVirtual().name("search-index-loader").start(() -> {
+            try {
+                long begin = System.currentTimeMillis();
+                loadFromFile();
+                reconcile();
+                ready = true;
+                log.info("全文索引就绪，文章数: {}，耗时: {}ms", docs.size(), System.currentTimeMillis() - begin);
+            } catch (Exception e) {
+                log.error("全文索引加载失败，关键词检索将回退到数据库查询", e);
+            }
+        });
+    }
+
+    /**
+     * 定期与数据库对账，多实例部署时其他实例上的修改只能由此同步到本实例
+     */
+    @Scheduled(fixedDelayString = "${blog.search.reconcile-interval:60000}")
+    public void reconcilePeriodically() {
+        if (!ready) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.warn("全文索引对账失败，将在下次重试", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${blog.search.persist-interval:60000}")
+    public void persistIfDirty() {
+        if (ready && dirty) {
+            persist();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persistIfDirty();
+    }
+
+    private void reindex(List<Long> aids) {
+        for (int i = 0; i < aids.size(); i += RELOAD_BATCH_SIZE) {
+            List<Long> batch = aids.subList(i, Math.min(i + RELOAD_BATCH_SIZE, aids.size()));
+            Set<Long> missing = new HashSet<>(batch);
+            for (Article article : articleMapper.getArticlesForIndex(batch)) {
+                index(article);
+                missing.remove(article.getId());
+            }
+            remove(new ArrayList<>(missing));
+        }
+    }
+
+    private void index(Article article) {
+        Map<String, Integer> terms = new HashMap<>();
+        int length = addTerms(terms, article.getTitle(), TITLE_WEIGHT)
+                + addTerms(terms, article.getSummary(), SUMMARY_WEIGHT)
+                + addTerms(terms, HtmlUtil.extractText(article.getHtmlContent(), MAX_BODY_CHARS), BODY_WEIGHT);
+        IndexedDoc doc = new IndexedDoc(article.getId(), article.getUid(), article.getState(),
+                article.getEditTime() == null ? 0 : article.getEditTime().getTime(), length, terms);
+        lock.writeLock().lock();
+        try {
+            putDoc(doc);
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void updateState(List<Long> aids, Integer state) {
+        lock.writeLock().lock();
+        try {
+            for (Long aid : aids) {
+                IndexedDoc doc = docs.get(aid);
+                if (doc != null) {
+                    doc.state = state;
+                }
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(List<Long> aids) {
+        if (aids.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            aids.forEach(this::removeDoc);
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 以下两个方法需在持有写锁时调用
+    private void putDoc(IndexedDoc doc) {
+        removeDoc(doc.aid);
+        docs.put(doc.aid, doc);
+        totalLength += doc.length;
+        doc.terms.forEach((term, tf) -> postings.computeIfAbsent(term, _ -> new HashMap<>()).put(doc.aid, tf));
+    }
+
+    private void removeDoc(Long aid) {
+        IndexedDoc old = docs.remove(aid);
+        if (old == null) {
+            return;
+        }
+        totalLength -= old.length;
+        for (String term : old.terms.keySet()) {
+            Map<Long, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(aid);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * 与数据库对账：删除已不存在的文章，重建新增或editTime变化的文章，同步状态和作者
+     */
+    private void reconcile() {
+        List<Article> stamps = articleMapper.getArticleStamps();
+        Set<Long> existing = new HashSet<>();
+        List<Long> stale = new ArrayList<>();
+        int changed = 0;
+        lock.writeLock().lock();
+        try {
+            for (Article stamp : stamps) {
+                existing.add(stamp.getId());
+                IndexedDoc doc = docs.get(stamp.getId());
+                long editTime = stamp.getEditTime() == null ? 0 : stamp.getEditTime().getTime();
+                if (doc == null || doc.editTime != editTime) {
+                    stale.add(stamp.getId());
+                } else if (!Objects.equals(doc.state, stamp.getState()) || !Objects.equals(doc.uid, stamp.getUid())) {
+                    doc.state = stamp.getState();
+                    doc.uid = stamp.getUid();
+                    changed++;
+                }
+            }
+            List<Long> removed = docs.keySet().stream().filter(aid -> !existing.contains(aid)).toList();
+            removed.forEach(this::removeDoc);
+            changed += removed.size();
+            if (changed > 0) {
+                dirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        reindex(stale);
+        if (changed > 0 || !stale.isEmpty() || !ready) {
+            log.info("全文索引对账完成，重建文章数: {}，更新或删除文章数: {}", stale.size(), changed);
+        }
+    }
+
+    private void loadFromFile() {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(indexFile))))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                log.warn("全文索引文件版本不匹配，将全量重建: {}", indexFile);
+                return;
+            }
+            int docCount = in.readInt();
+            lock.writeLock().lock();
+            try {
+                for (int i = 0; i < docCount; i++) {
+                    long aid = in.readLong();
+                    long uid = in.readLong();
+                    int state = in.readInt();
+                    long editTime = in.readLong();
+                    int length = in.readInt();
+                    int termCount = in.readInt();
+                    Map<String, Integer> terms = new HashMap<>(termCount * 4 / 3 + 1);
+                    for (int j = 0; j < termCount; j++) {
+                        terms.put(in.readUTF(), in.readInt());
+                    }
+                    putDoc(new IndexedDoc(aid, uid == -1 ? null : uid, state == -1 ? null : state, editTime, length, terms));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            log.warn("读取全文索引文件失败，将全量重建: {}", indexFile, e);
+            lock.writeLock().lock();
+            try {
+                docs.clear();
+                postings.clear();
+                totalLength = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void persist() {
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(indexFile.toAbsolutePath().getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeInt(docs.size());
+                for (IndexedDoc doc : docs.values()) {
+                    out.writeLong(doc.aid);
+                    out.writeLong(doc.uid == null ? -1 : doc.uid);
+                    out.writeInt(doc.state == null ? -1 : doc.state);
+                    out.writeLong(doc.editTime);
+                    out.writeInt(doc.length);
+                    out.writeInt(doc.terms.size());
+                    for (Map.Entry<String, Integer> term : doc.terms.entrySet()) {
+                        out.writeUTF(term.getKey());
+                        out.writeInt(term.getValue());
+                    }
+                }
+            }
+            dirty = false;
+        } catch (IOException e) {
+            log.error("持久化全文索引失败: {}", indexFile, e);
+            return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("替换全文索引文件失败: {}", indexFile, e);
+        }
+    }
+
+    private double idf(int docFrequency) {
+        int n = docs.size();
+        return Math.log(1 + (n - docFrequency + 0.5) / (docFrequency + 0.5));
+    }
+
+    private static int addTerms(Map<String, Integer> terms, String text, int weight) {
+        List<String> tokens = CjkBigramTokenizer.tokenize(text);
+        for (String token : tokens) {
+            terms.merge(token, weight, Integer::sum);
+        }
+        return tokens.size() * weight;
+    }
+
+    private static final class IndexedDoc {
+        final long aid;
+        Long uid;
+        Integer state;
+        final long editTime;
+        final int length;
+        final Map<String, Integer> terms;
+
+        IndexedDoc(long aid, Long uid, Integer state, long editTime, int length, Map<String, Integer> terms) {
+            this.aid = aid;
+            this.uid = uid;
+            this.state = state;
+            this.editTime = editTime;
+            this.length = length;
+            this.terms = terms;
+        }
+
+        boolean matches(Long uid, Integer state) {
+            return (uid == null || uid.equals(this.uid)) && (state == null || state.equals(this.state));
+        }
+    }
+
+    private record TermPostings(Map<Long, Integer> posting, double idf) {
+    }
+
+    private record ScoredDoc(long aid, double score, long editTime) {
+    }
+}
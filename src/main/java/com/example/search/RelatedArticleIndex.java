@@ -0,0 +1,291 @@
+package com.example.search;
+
+import com.example.common.events.ArticleChangedEvent;
+import com.example.entity.Article;
+import com.example.entity.ArticleTag;
+import com.example.mapper.ArticleMapper;
+import com.example.mapper.TagMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于标签共现的相关文章索引
+ * 在内存中维护文章→标签和标签→文章两个方向的映射，按加权Jaccard相似度排序：
+ * 标签权重为idf = ln(1 + N / df)，相似度 = 共同标签权重之和 / 两篇文章标签并集的权重之和。
+ * 只推荐已发布的文章，由文章变更事件增量维护，并定期按(id, state, editTime)与数据库对账以同步其他实例上的修改。
+ */
+@Slf4j
+@Component
+public class RelatedArticleIndex {
+
+    private static final int PUBLISHED = 1;
+    private static final int RELOAD_BATCH_SIZE = 200;
+
+    private final TagMapper tagMapper;
+    private final ArticleMapper articleMapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Doc> docs = new HashMap<>();
+    private final Map<Long, Set<Long>> postings = new HashMap<>();
+    private volatile boolean ready;
+
+    public RelatedArticleIndex(TagMapper tagMapper, ArticleMapper articleMapper) {
+        this.tagMapper = tagMapper;
+        this.articleMapper = articleMapper;
+    }
+
+    private static final class Doc {
+        int state;
+        final long editTime;
+        final long[] tids;
+
+        Doc(int state, long editTime, long[] tids) {
+            this.state = state;
+            this.editTime = editTime;
+            this.tids = tids;
+        }
+    }
+
+    private record Scored(long aid, double score) {
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 与指定文章最相关的已发布文章
+     *
+     * @return 按相似度降序排列的文章ID，不含文章本身；索引未就绪或文章没有标签时为空
+     */
+    public List<Long> related(Long aid, int k) {
+        if (!ready || k <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Doc doc = docs.get(aid);
+            if (doc == null || doc.tids.length == 0) {
+                return List.of();
+            }
+            int n = docs.size();
+            double selfWeight = 0;
+            Map<Long, Double> shared = new HashMap<>();
+            for (long tid : doc.tids) {
+                Set<Long> aids = postings.get(tid);
+                double w = idf(n, aids.size());
+                selfWeight += w;
+                for (Long other : aids) {
+                    if (!other.equals(aid)) {
+                        shared.merge(other, w, Double::sum);
+                    }
+                }
+            }
+            // 小顶堆保留得分最高的k篇
+            PriorityQueue<Scored> top = new PriorityQueue<>(k + 1, Comparator.comparingDouble(Scored::score));
+            for (Map.Entry<Long, Double> entry : shared.entrySet()) {
+                Doc other = docs.get(entry.getKey());
+                if (other.state != PUBLISHED) {
+                    continue;
+                }
+                double otherWeight = 0;
+                for (long tid : other.tids) {
+                    otherWeight += idf(n, postings.get(tid).size());
+                }
+                double intersection = entry.getValue();
+                double score = intersection / (selfWeight + otherWeight - intersection);
+                if (top.size() < k) {
+                    top.add(new Scored(entry.getKey(), score));
+                } else if (score > top.peek().score()) {
+                    top.poll();
+                    top.add(new Scored(entry.getKey(), score));
+                }
+            }
+            List<Scored> sorted = new ArrayList<>(top);
+            sorted.sort(Comparator.comparingDouble(Scored::score).reversed().thenComparingLong(Scored::aid));
+            List<Long> result = new ArrayList<>(sorted.size());
+            for (Scored scored : sorted) {
+                result.add(scored.aid());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArticleChanged(ArticleChangedEvent event) {
+        try {
+            switch (event.getType()) {
+                // 标签在保存时整体调整，重新读取提交后的标签和状态
+                case SAVED -> reload(event.getAids());
+                case STATE_CHANGED -> updateState(event.getAids(), event.getState());
+                case DELETED -> remove(event.getAids());
+            }
+        } catch (Exception e) {
+            log.error("更新相关文章索引失败，文章ID: {}", event.getAids(), e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        Thread.ofVirtual().name("related-index-loader").start(() -> {
+            try {
+                long begin = System.currentTimeMillis();
+                loadAll();
+                ready = true;
+                log.info("相关文章索引就绪，文章数: {}，标签数: {}，耗时: {}ms",
+                        docs.size(), postings.size(), System.currentTimeMillis() - begin);
+            } catch (Exception e) {
+                log.error("相关文章索引加载失败", e);
+            }
+        });
+    }
+
+    // 标签随文章保存一起修改，editTime变化的文章重新读取标签
+    @Scheduled(fixedDelayString = "${blog.related.reconcile-interval:60000}")
+    public void reconcile() {
+        if (!ready) {
+            return;
+        }
+        try {
+            List<Article> stamps = articleMapper.getArticleStamps();
+            Set<Long> existing = new HashSet<>();
+            List<Long> stale = new ArrayList<>();
+            int changed = 0;
+            lock.writeLock().lock();
+            try {
+                for (Article stamp : stamps) {
+                    existing.add(stamp.getId());
+                    Doc doc = docs.get(stamp.getId());
+                    int state = stamp.getState() == null ? 0 : stamp.getState();
+                    if (doc == null || doc.editTime != editTimeOf(stamp)) {
+                        stale.add(stamp.getId());
+                    } else if (doc.state != state) {
+                        doc.state = state;
+                        changed++;
+                    }
+                }
+                List<Long> removed = docs.keySet().stream().filter(aid -> !existing.contains(aid)).toList();
+                removed.forEach(this::removeDoc);
+                changed += removed.size();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            reload(stale);
+            if (changed > 0 || !stale.isEmpty()) {
+                log.info("相关文章索引对账完成，重新加载文章数: {}，更新或删除文章数: {}", stale.size(), changed);
+            }
+        } catch (Exception e) {
+            log.warn("相关文章索引对账失败，将在下次重试", e);
+        }
+    }
+
+    private void loadAll() {
+        Map<Long, List<Long>> tags = new HashMap<>();
+        for (ArticleTag link : tagMapper.getAllArticleTags()) {
+            tags.computeIfAbsent(link.getAid(), _ -> new ArrayList<>()).add(link.getTid());
+        }
+        List<Article> stamps = articleMapper.getArticleStamps();
+        lock.writeLock().lock();
+        try {
+            for (Article stamp : stamps) {
+                put(stamp.getId(), stamp.getState(), editTimeOf(stamp), tags.getOrDefault(stamp.getId(), List.of()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reload(List<Long> aids) {
+        for (int i = 0; i < aids.size(); i += RELOAD_BATCH_SIZE) {
+            List<Long> batch = aids.subList(i, Math.min(i + RELOAD_BATCH_SIZE, aids.size()));
+            Map<Long, List<Long>> tags = new HashMap<>();
+            for (ArticleTag link : tagMapper.getTagsByAids(batch)) {
+                tags.computeIfAbsent(link.getAid(), _ -> new ArrayList<>()).add(link.getTid());
+            }
+            Map<Long, Article> stamps = new HashMap<>();
+            for (Article stamp : articleMapper.getArticleStampsByIds(batch)) {
+                stamps.put(stamp.getId(), stamp);
+            }
+            lock.writeLock().lock();
+            try {
+                for (Long aid : batch) {
+                    Article stamp = stamps.get(aid);
+                    if (stamp == null) {
+                        removeDoc(aid);
+                    } else {
+                        put(aid, stamp.getState(), editTimeOf(stamp), tags.getOrDefault(aid, List.of()));
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void updateState(List<Long> aids, Integer state) {
+        lock.writeLock().lock();
+        try {
+            for (Long aid : aids) {
+                Doc doc = docs.get(aid);
+                if (doc != null && state != null) {
+                    doc.state = state;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(List<Long> aids) {
+        lock.writeLock().lock();
+        try {
+            aids.forEach(this::removeDoc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 调用方持有写锁
+    private void put(Long aid, Integer state, long editTime, List<Long> tids) {
+        removeDoc(aid);
+        long[] sorted = tids.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+        docs.put(aid, new Doc(state == null ? 0 : state, editTime, sorted));
+        for (long tid : sorted) {
+            postings.computeIfAbsent(tid, _ -> new HashSet<>()).add(aid);
+        }
+    }
+
+    // 调用方持有写锁
+    private void removeDoc(Long aid) {
+        Doc old = docs.remove(aid);
+        if (old == null) {
+            return;
+        }
+        for (long tid : old.tids) {
+            Set<Long> aids = postings.get(tid);
+            if (aids != null) {
+                aids.remove(aid);
+                if (aids.isEmpty()) {
+                    postings.remove(tid);
+                }
+            }
+        }
+    }
+
+    private static long editTimeOf(Article stamp) {
+        return stamp.getEditTime() == null ? 0 : stamp.getEditTime().getTime();
+    }
+
+    private static double idf(int n, int df) {
+        return Math.log(1 + (double) n / df);
+    }
+}
@@ -10,6 +10,7 @@ import com.example.common.utils.RedisUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -41,6 +42,8 @@ public class SecurityConfig {
             "/reset-password",
             "/forgot-password",
             "/error",
+            // 图片通过<img>引用，无法携带令牌
+            "/media/**",
     };
 
     private static final String ADMIN_ROLE = "超级管理员";
@@ -49,18 +52,21 @@ public class SecurityConfig {
     private final RedisUtil redisUtil;
     private final ObjectMapper objectMapper;
     private final SecurityExceptionHandler exceptionHandler;
-
+    // 由Token中的声明构造当前用户，不再每次请求查询用户和角色
+    private final boolean statelessAuth;
 
     public SecurityConfig(
             UserService userService,
             RedisUtil redisUtil,
             ObjectMapper objectMapper,
-            SecurityExceptionHandler exceptionHandler
+            SecurityExceptionHandler exceptionHandler,
+            @Value("${blog.auth.stateless:true}") boolean statelessAuth
     ) {
         this.userService = userService;
         this.redisUtil = redisUtil;
         this.objectMapper = objectMapper;
         this.exceptionHandler = exceptionHandler;
+        this.statelessAuth = statelessAuth;
     }
 
     /**
@@ -98,7 +104,7 @@ public class SecurityConfig {
                 )
                 // 过滤器顺序：验证码过滤器（登录时验证） -> JWT 认证过滤器（所有请求解析 Token） -> 用户名密码认证过滤器
                 .addFilterBefore(new CaptchaFilter(redisUtil, exceptionHandler), UsernamePasswordAuthenticationFilter.class)
-                .addFilterBefore(new JwtAuthenticationFilter(userService, exceptionHandler), UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(new JwtAuthenticationFilter(userService, exceptionHandler, statelessAuth), UsernamePasswordAuthenticationFilter.class)
                 .csrf(AbstractHttpConfigurer::disable)
                 // 只能处理 Spring Security 框架内部抛出的异常
                 .exceptionHandling(
@@ -5,6 +5,8 @@ import com.auth0.jwt.interfaces.DecodedJWT;
 import com.example.security.handlers.SecurityExceptionHandler;
 import com.example.service.UserService;
 import com.example.common.utils.JwtTokenUtil;
+import com.example.entity.User;
+import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -19,13 +21,21 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
+/**
+ * 无状态模式下直接由Token中的用户ID和角色构造当前用户，只需从Redis读取一次认证版本号，不查询数据库；
+ * 版本号保存在user表中，Redis只是缓存；与Token中的不一致说明用户已被禁用、删除或修改了角色、密码，拒绝该Token。
+ * 旧格式的Token或Redis不可用时，按用户名从数据库加载用户。
+ */
+@Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final UserService userService;
     private final SecurityExceptionHandler exceptionHandler;
+    private final boolean stateless;
 
-    public JwtAuthenticationFilter(UserService userService, SecurityExceptionHandler exceptionHandler) {
+    public JwtAuthenticationFilter(UserService userService, SecurityExceptionHandler exceptionHandler, boolean stateless) {
         this.userService = userService;
         this.exceptionHandler = exceptionHandler;
+        this.stateless = stateless;
     }
 
     @Override
@@ -40,9 +50,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
             try {
                 DecodedJWT decodedJWT = JwtTokenUtil.validateToken(token);
-                String username = decodedJWT.getSubject();
-
-                UserDetails userDetails = userService.loadUserByUsername(username);
+                UserDetails userDetails = stateless ? loadFromToken(decodedJWT) : null;
+                if (userDetails == null) {
+                    User user = (User) userService.loadUserByUsername(decodedJWT.getSubject());
+                    if (!user.isEnabled()) {
+                        throw new JWTVerificationException("账号已被禁用");
+                    }
+                    // 携带版本号的Token在回退到数据库时同样按user表中的版本号校验
+                    Long version = JwtTokenUtil.getVersion(decodedJWT);
+                    if (version != null && !version.equals(user.getAuthVersion())) {
+                        throw new JWTVerificationException("token已失效，请重新登录");
+                    }
+                    userDetails = user;
+                }
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
@@ -57,4 +77,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
+
+    private User loadFromToken(DecodedJWT decodedJWT) {
+        User user = JwtTokenUtil.toUser(decodedJWT);
+        Long version = JwtTokenUtil.getVersion(decodedJWT);
+        if (user == null || version == null) {
+            return null;
+        }
+        Long current;
+        try {
+            current = userService.getAuthVersion(user.getId());
+        } catch (RuntimeException e) {
+            log.warn("读取认证版本号失败，从数据库加载用户：uid={}", user.getId(), e);
+            return null;
+        }
+        // 用户不存在或版本号不一致
+        if (!version.equals(current)) {
+            throw new JWTVerificationException("token已失效，请重新登录");
+        }
+        return user;
+    }
 }
@@ -0,0 +1,76 @@
+package com.example.service;
+
+import com.example.common.events.ArticleChangedEvent;
+import com.example.common.utils.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文章列表总数缓存
+ * 每个作者一个Redis哈希，字段为"状态:关键词"；管理员视角的全站统计放在ALL下。
+ * 文章写操作提交后删除对应作者和全站的哈希，翻页时不必每次都count(*)。
+ */
+@Slf4j
+@Component
+public class ArticleCountCache {
+
+    private static final String ARTICLE_COUNT_PREFIX = "ARTICLE_COUNT_";
+    private static final String ALL_SCOPE = "ALL";
+
+    private final RedisUtil redisUtil;
+    private final long ttlSeconds;
+
+    public ArticleCountCache(RedisUtil redisUtil,
+                             @Value("${blog.cache.article-count.ttl-seconds:600}") long ttlSeconds) {
+        this.redisUtil = redisUtil;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * @param uid 作者ID，为null时表示全站
+     * @return 未命中时返回null
+     */
+    public Integer get(Long uid, Integer state, String keywords) {
+        try {
+            Object value = redisUtil.hGet(key(uid), field(state, keywords));
+            return value instanceof Number number ? number.intValue() : null;
+        } catch (Exception e) {
+            log.warn("读取文章总数缓存失败，用户ID: {}", uid, e);
+            return null;
+        }
+    }
+
+    public void put(Long uid, Integer state, String keywords, int count) {
+        try {
+            String key = key(uid);
+            redisUtil.hPut(key, field(state, keywords), count);
+            redisUtil.expire(key, ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入文章总数缓存失败，用户ID: {}", uid, e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArticleChanged(ArticleChangedEvent event) {
+        try {
+            if (event.getUid() != null) {
+                redisUtil.delete(key(event.getUid()));
+            }
+            redisUtil.delete(key(null));
+        } catch (Exception e) {
+            log.warn("清除文章总数缓存失败，用户ID: {}", event.getUid(), e);
+        }
+    }
+
+    private static String key(Long uid) {
+        return ARTICLE_COUNT_PREFIX + (uid == null ? ALL_SCOPE : uid);
+    }
+
+    private static String field(Integer state, String keywords) {
+        return state + ":" + (keywords == null ? "" : keywords);
+    }
+}
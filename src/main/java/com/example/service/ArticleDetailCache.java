@@ -0,0 +1,169 @@
+package com.example.service;
+
+import com.example.common.events.ArticleChangedEvent;
+import com.example.common.utils.LruCache;
+import com.example.common.utils.RedisUtil;
+import com.example.entity.Article;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 文章详情两级缓存
+ * L1为按内容大小限制容量的进程内LRU，L2为Redis共享缓存。
+ * 写操作提交后按文章ID精确失效；其他实例的L1依靠较短的过期时间收敛。
+ * 缓存中的浏览量是加载时数据库中的值，浏览量写回后由PageViewCounterService失效对应文章，
+ * 否则内存计数清零后合并出的浏览量会比实际少。
+ */
+@Slf4j
+@Component
+public class ArticleDetailCache {
+
+    private static final String ARTICLE_DETAIL_PREFIX = "ARTICLE_DETAIL_";
+    // 对象头、时间戳等固定开销的估算值
+    private static final long ARTICLE_BASE_WEIGHT = 256;
+
+    private final RedisUtil redisUtil;
+    private final LruCache<Long, Article> local;
+    private final long redisTtlSeconds;
+
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteMisses = new LongAdder();
+
+    public ArticleDetailCache(RedisUtil redisUtil,
+                              @Value("${blog.cache.article.local-max-bytes:67108864}") long localMaxBytes,
+                              @Value("${blog.cache.article.local-ttl-seconds:30}") long localTtlSeconds,
+                              @Value("${blog.cache.article.redis-ttl-seconds:600}") long redisTtlSeconds) {
+        this.redisUtil = redisUtil;
+        this.local = new LruCache<>(localMaxBytes, TimeUnit.SECONDS.toMillis(localTtlSeconds), ArticleDetailCache::weigh);
+        this.redisTtlSeconds = redisTtlSeconds;
+    }
+
+    /**
+     * 依次查询L1、L2，均未命中时调用loader从数据库加载并回填
+     *
+     * @return 缓存对象的浅拷贝，调用方可以修改其字段；文章不存在时返回null
+     */
+    public Article get(Long aid, Function<Long, Article> loader) {
+        Article article = local.get(aid);
+        if (article == null) {
+            article = readRemote(aid);
+            if (article == null) {
+                article = loader.apply(aid);
+                if (article == null) {
+                    return null;
+                }
+                writeRemote(aid, article);
+            }
+            local.put(aid, article);
+        }
+        return copyOf(article);
+    }
+
+    /**
+     * 只查询L1，不触发加载，不计入命中统计，返回的对象不可修改
+     */
+    public Article peek(Long aid) {
+        return local.peek(aid);
+    }
+
+    public void evict(Long aid) {
+        local.remove(aid);
+        try {
+            redisUtil.delete(ARTICLE_DETAIL_PREFIX + aid);
+        } catch (Exception e) {
+            log.warn("删除Redis文章缓存失败，文章ID: {}", aid, e);
+        }
+    }
+
+    /**
+     * 批量失效，用于浏览量写回后
+     */
+    public void evictAll(Collection<Long> aids) {
+        aids.forEach(local::remove);
+        try {
+            redisUtil.delete(aids.stream().map(aid -> ARTICLE_DETAIL_PREFIX + aid).toList());
+        } catch (Exception e) {
+            log.warn("批量删除Redis文章缓存失败，文章数: {}", aids.size(), e);
+        }
+    }
+
+    // 事务提交后再失效，避免并发读在提交前把旧数据重新写回缓存；先于依赖详情缓存的监听器执行
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArticleChanged(ArticleChangedEvent event) {
+        event.getAids().forEach(this::evict);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("localSize", local.size());
+        map.put("localBytes", local.weight());
+        map.put("localHits", local.hitCount());
+        map.put("localMisses", local.missCount());
+        map.put("localEvictions", local.evictionCount());
+        map.put("redisHits", remoteHits.sum());
+        map.put("redisMisses", remoteMisses.sum());
+        return map;
+    }
+
+    private Article readRemote(Long aid) {
+        try {
+            Object value = redisUtil.get(ARTICLE_DETAIL_PREFIX + aid);
+            if (value instanceof Article article) {
+                remoteHits.increment();
+                return article;
+            }
+        } catch (Exception e) {
+            log.warn("读取Redis文章缓存失败，文章ID: {}", aid, e);
+        }
+        remoteMisses.increment();
+        return null;
+    }
+
+    private void writeRemote(Long aid, Article article) {
+        try {
+            redisUtil.set(ARTICLE_DETAIL_PREFIX + aid, article, redisTtlSeconds);
+        } catch (Exception e) {
+            log.warn("写入Redis文章缓存失败，文章ID: {}", aid, e);
+        }
+    }
+
+    private static Article copyOf(Article source) {
+        Article copy = new Article();
+        BeanUtils.copyProperties(source, copy);
+        // 集合和数组不能与缓存中的对象共用
+        if (source.getTags() != null) {
+            copy.setTags(new ArrayList<>(source.getTags()));
+        }
+        if (source.getDynamicTags() != null) {
+            copy.setDynamicTags(source.getDynamicTags().clone());
+        }
+        return copy;
+    }
+
+    // 按字符串内容估算占用字节数（UTF-16）
+    private static long weigh(Article article) {
+        return ARTICLE_BASE_WEIGHT
+                + 2L * (length(article.getTitle())
+                + length(article.getMdContent())
+                + length(article.getHtmlContent())
+                + length(article.getSummary()));
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.service;
+
+import com.example.common.events.ArticleChangedEvent;
+import com.example.common.exceptions.BadRequestException;
+import com.example.common.exceptions.BusinessException;
+import com.example.common.exceptions.ForbiddenException;
+import com.example.common.utils.HtmlUtil;
+import com.example.common.utils.RedisUtil;
+import com.example.common.utils.Util;
+import com.example.entity.Article;
+import com.example.entity.ArticleDraft;
+import com.example.entity.DraftPatch;
+import com.example.mapper.ArticleMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 草稿自动保存
+ * 编辑器只提交相对于已知版本的增量补丁，补丁追加到Redis列表中；
+ * 定时任务或显式保存时才把补丁合并进基准内容并写回article表。
+ * <p>
+ * 写回时以基准内容对应的editTime为条件，期间文章被整篇保存过时不写回，草稿作废。
+ * <p>
+ * Redis结构：DRAFT_{aid}为哈希，保存uid、revision（最新版本）、baseRevision（基准版本）、基准内容及其editTime（毫秒，未知时为-1）；
+ * DRAFT_OPS_{aid}为列表，按顺序保存baseRevision之后的补丁；DRAFT_DIRTY集合记录有未写回补丁的文章。
+ */
+@Slf4j
+@Service
+public class ArticleDraftService {
+
+    private static final String DRAFT_PREFIX = "DRAFT_";
+    private static final String DRAFT_OPS_PREFIX = "DRAFT_OPS_";
+    private static final String DRAFT_DIRTY = "DRAFT_DIRTY";
+    private static final String DRAFT_COMPACT_LOCK_PREFIX = "DRAFT_COMPACT_LOCK_";
+    // 显式保存时等待定时合并结束的最长时间
+    private static final long SAVE_LOCK_WAIT_MILLIS = 5000;
+    private static final String MD_CONTENT = "mdContent";
+    private static final String HTML_CONTENT = "htmlContent";
+    private static final int SUMMARY_LENGTH = 50;
+    private static final long UNKNOWN_EDIT_TIME = -1;
+
+    private enum Compaction {
+        DONE,   // 已写回或没有需要写回的补丁
+        BUSY,   // 其他合并正在进行
+        STALE   // 文章在草稿之外被保存过，草稿已作废
+    }
+
+    // 草稿不存在时以文章内容初始化，已存在时不覆盖
+    private static final String INIT_SCRIPT =
+            "if redis.call('exists', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('hset', KEYS[1], 'uid', ARGV[1], 'revision', 0, 'baseRevision', 0, " +
+            "'mdContent', ARGV[2], 'htmlContent', ARGV[3], 'editTime', ARGV[5]) " +
+            "redis.call('expire', KEYS[1], ARGV[4]) " +
+            "return 1";
+
+    // 版本号一致时追加补丁，返回新版本号；草稿不存在返回-1，版本冲突返回-2-当前版本号
+    private static final String APPEND_SCRIPT =
+            "local rev = redis.call('hget', KEYS[1], 'revision') " +
+            "if not rev then return -1 end " +
+            "rev = tonumber(rev) " +
+            "if rev ~= tonumber(ARGV[1]) then return -2 - rev end " +
+            "redis.call('rpush', KEYS[2], ARGV[2]) " +
+            "redis.call('hset', KEYS[1], 'revision', rev + 1) " +
+            "redis.call('sadd', KEYS[3], ARGV[4]) " +
+            "redis.call('expire', KEYS[1], ARGV[3]) " +
+            "redis.call('expire', KEYS[2], ARGV[3]) " +
+            "return rev + 1";
+
+    // 基准版本未被其他实例改动时，用合并后的内容替换基准并移除已合并的补丁
+    private static final String COMPACT_SCRIPT =
+            "local base = redis.call('hget', KEYS[1], 'baseRevision') " +
+            "if not base or tonumber(base) ~= tonumber(ARGV[1]) then return 0 end " +
+            "redis.call('ltrim', KEYS[2], ARGV[3], -1) " +
+            "redis.call('hset', KEYS[1], 'baseRevision', ARGV[2], 'mdContent', ARGV[4], 'htmlContent', ARGV[5], 'editTime', ARGV[7]) " +
+            "if redis.call('llen', KEYS[2]) == 0 then redis.call('srem', KEYS[3], ARGV[6]) end " +
+            "return 1";
+
+    private final RedisUtil redisUtil;
+    private final ArticleMapper articleMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final long ttlSeconds;
+
+    public ArticleDraftService(RedisUtil redisUtil,
+                               ArticleMapper articleMapper,
+                               ApplicationEventPublisher eventPublisher,
+                               ObjectMapper objectMapper,
+                               @Value("${blog.draft.ttl-seconds:604800}") long ttlSeconds) {
+        this.redisUtil = redisUtil;
+        this.articleMapper = articleMapper;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * 获取当前草稿，不存在时以文章内容初始化
+     */
+    public ArticleDraft getDraft(Long aid) {
+        Long uid = Util.getCurrentUser().getId();
+        DraftState state = read(aid);
+        if (state == null) {
+            Article article = articleMapper.getArticleById(aid);
+            if (article == null) {
+                throw new BusinessException(404, "文章不存在");
+            }
+            checkOwner(article.getUid(), uid);
+            long editTime = article.getEditTime() == null ? UNKNOWN_EDIT_TIME : article.getEditTime().getTime();
+            redisUtil.executeScript(INIT_SCRIPT, Long.class, List.of(draftKey(aid)),
+                    uid, nullToEmpty(article.getMdContent()), nullToEmpty(article.getHtmlContent()), ttlSeconds, editTime);
+            state = read(aid);
+            if (state == null) {
+                throw new BusinessException(500, "草稿初始化失败");
+            }
+        }
+        checkOwner(state.uid(), uid);
+        String[] content = apply(state);
+        return new ArticleDraft(aid, state.revision(), content[0], content[1]);
+    }
+
+    /**
+     * 追加增量补丁
+     *
+     * @return 应用补丁后的版本号
+     */
+    public long applyPatch(Long aid, DraftPatch patch) {
+        if (patch == null || patch.getBaseRevision() == null || patch.getEdits() == null || patch.getEdits().isEmpty()) {
+            throw new BadRequestException(400, "补丁内容为空");
+        }
+        for (DraftPatch.Edit edit : patch.getEdits()) {
+            if (!MD_CONTENT.equals(edit.getField()) && !HTML_CONTENT.equals(edit.getField())) {
+                throw new BadRequestException(400, "不支持的草稿字段: " + edit.getField());
+            }
+            if (edit.getOffset() < 0 || edit.getDeleteCount() < 0) {
+                throw new BadRequestException(400, "补丁位置不合法");
+            }
+        }
+        Object owner = redisUtil.hGet(draftKey(aid), "uid");
+        if (owner == null) {
+            throw new BusinessException(404, "草稿不存在，请先获取草稿");
+        }
+        checkOwner(((Number) owner).longValue(), Util.getCurrentUser().getId());
+        String edits;
+        try {
+            edits = objectMapper.writeValueAsString(patch.getEdits());
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException(400, "补丁格式错误");
+        }
+        Long result = redisUtil.executeScript(APPEND_SCRIPT, Long.class,
+                List.of(draftKey(aid), opsKey(aid), DRAFT_DIRTY), patch.getBaseRevision(), edits, ttlSeconds, aid);
+        if (result == null || result == -1) {
+            throw new BusinessException(404, "草稿不存在，请先获取草稿");
+        }
+        if (result < -1) {
+            throw new BusinessException(409, "草稿版本冲突，当前版本: " + (-2 - result));
+        }
+        return result;
+    }
+
+    /**
+     * 显式保存：立即把草稿写回article表
+     */
+    public ArticleDraft save(Long aid) {
+        ArticleDraft draft = getDraft(aid);
+        // 定时合并可能正在进行，等它结束后再合并一次，确保返回时已写回
+        switch (compact(aid, SAVE_LOCK_WAIT_MILLIS)) {
+            case BUSY -> throw new BusinessException(503, "草稿正在保存，请稍后重试");
+            case STALE -> throw new BusinessException(409, "文章已在其他地方保存，草稿已失效，请重新获取草稿");
+            default -> {
+            }
+        }
+        return draft;
+    }
+
+    // 定时把有未写回补丁的草稿合并进article表
+    @Scheduled(fixedDelayString = "${blog.draft.compact-interval:30000}")
+    public void compactDirty() {
+        Set<Object> dirty;
+        try {
+            dirty = redisUtil.sMembers(DRAFT_DIRTY);
+        } catch (Exception e) {
+            log.warn("读取待合并草稿失败", e);
+            return;
+        }
+        if (dirty == null) {
+            return;
+        }
+        for (Object member : dirty) {
+            Long aid = ((Number) member).longValue();
+            try {
+                compact(aid, 0);
+            } catch (Exception e) {
+                log.error("合并草稿失败，文章ID: {}", aid, e);
+            }
+        }
+    }
+
+    // 显式保存整篇文章后草稿作废；文章删除时一并清理
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArticleChanged(ArticleChangedEvent event) {
+        boolean explicitSave = event.getType() == ArticleChangedEvent.Type.SAVED && event.getArticle() != null;
+        if (!explicitSave && event.getType() != ArticleChangedEvent.Type.DELETED) {
+            return;
+        }
+        for (Long aid : event.getAids()) {
+            try {
+                redisUtil.delete(draftKey(aid));
+                redisUtil.delete(opsKey(aid));
+            } catch (Exception e) {
+                log.warn("删除草稿失败，文章ID: {}", aid, e);
+            }
+        }
+    }
+
+    /**
+     * 把草稿的补丁合并进article表
+     *
+     * @param waitMillis 锁被占用时最多等待的时间，0表示不等待
+     */
+    private Compaction compact(Long aid, long waitMillis) {
+        String lockKey = DRAFT_COMPACT_LOCK_PREFIX + aid;
+        String requestId = UUID.randomUUID().toString();
+        if (!lock(lockKey, requestId, waitMillis)) {
+            return Compaction.BUSY;
+        }
+        try {
+            DraftState state = read(aid);
+            if (state == null) {
+                // 草稿已过期或已被显式保存清理
+                redisUtil.sRemove(DRAFT_DIRTY, aid);
+                return Compaction.DONE;
+            }
+            if (state.ops().isEmpty()) {
+                return Compaction.DONE;
+            }
+            String[] content = apply(state);
+            Article article = new Article();
+            article.setId(aid);
+            article.setMdContent(content[0]);
+            article.setHtmlContent(content[1]);
+            article.setSummary(HtmlUtil.extractText(content[1], SUMMARY_LENGTH));
+            // 取整到秒，无论editTime列保留几位小数，写入后读出的值都与草稿中记录的一致
+            long now = System.currentTimeMillis() / 1000 * 1000;
+            article.setEditTime(new Timestamp(now));
+            Timestamp baseEditTime = state.editTime() == UNKNOWN_EDIT_TIME ? null : new Timestamp(state.editTime());
+            if (articleMapper.updateArticleContent(article, baseEditTime) == 0) {
+                // 整篇保存已写入更新的内容，草稿基于旧内容，写回会覆盖它
+                log.info("文章在草稿之外被保存过，丢弃草稿，文章ID: {}", aid);
+                discard(aid);
+                return Compaction.STALE;
+            }
+            redisUtil.executeScript(COMPACT_SCRIPT, Long.class, List.of(draftKey(aid), opsKey(aid), DRAFT_DIRTY),
+                    state.baseRevision(), state.revision(), state.ops().size(), content[0], content[1], aid, now);
+            eventPublisher.publishEvent(ArticleChangedEvent.edited(aid, state.uid()));
+            return Compaction.DONE;
+        } finally {
+            redisUtil.releaseLock(lockKey, requestId);
+        }
+    }
+
+    private void discard(Long aid) {
+        redisUtil.delete(draftKey(aid));
+        redisUtil.delete(opsKey(aid));
+        redisUtil.sRemove(DRAFT_DIRTY, aid);
+    }
+
+    private boolean lock(String lockKey, String requestId, long waitMillis) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (true) {
+            if (Boolean.TRUE.equals(redisUtil.tryLock(lockKey, requestId, 30))) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 在同一个事务中读取基准内容和补丁列表，避免读到合并了一半的状态
+     */
+    private DraftState read(Long aid) {
+        List<Object> results = redisUtil.executeInTransaction(ops -> {
+            ops.opsForHash().entries(draftKey(aid));
+            ops.opsForList().range(opsKey(aid), 0, -1);
+        });
+        if (results == null || results.size() < 2 || !(results.get(0) instanceof Map<?, ?> hash) || hash.isEmpty()) {
+            return null;
+        }
+        List<List<DraftPatch.Edit>> ops = new ArrayList<>();
+        if (results.get(1) instanceof List<?> list) {
+            for (Object item : list) {
+                try {
+                    ops.add(objectMapper.readValue((String) item, new TypeReference<>() {
+                    }));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("草稿补丁格式错误，文章ID: " + aid, e);
+                }
+            }
+        }
+        return new DraftState(
+                ((Number) hash.get("uid")).longValue(),
+                ((Number) hash.get("baseRevision")).longValue(),
+                (String) hash.get(MD_CONTENT),
+                (String) hash.get(HTML_CONTENT),
+                // 升级前创建的草稿没有记录editTime
+                hash.get("editTime") instanceof Number editTime ? editTime.longValue() : UNKNOWN_EDIT_TIME,
+                ops);
+    }
+
+    // 依次应用补丁，返回[mdContent, htmlContent]
+    private static String[] apply(DraftState state) {
+        StringBuilder md = new StringBuilder(nullToEmpty(state.mdContent()));
+        StringBuilder html = new StringBuilder(nullToEmpty(state.htmlContent()));
+        for (List<DraftPatch.Edit> edits : state.ops()) {
+            for (DraftPatch.Edit edit : edits) {
+                StringBuilder target = MD_CONTENT.equals(edit.getField()) ? md : html;
+                // 补丁基于编辑器中的文本计算，越界时截断到末尾，不让整份草稿不可用
+                int start = Math.min(edit.getOffset(), target.length());
+                int end = Math.min(start + edit.getDeleteCount(), target.length());
+                target.replace(start, end, nullToEmpty(edit.getText()));
+            }
+        }
+        return new String[]{md.toString(), html.toString()};
+    }
+
+    private static void checkOwner(Long owner, Long uid) {
+        if (owner == null || !owner.equals(uid)) {
+            throw new ForbiddenException(403, "只能编辑自己的文章");
+        }
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static String draftKey(Long aid) {
+        return DRAFT_PREFIX + aid;
+    }
+
+    private static String opsKey(Long aid) {
+        return DRAFT_OPS_PREFIX + aid;
+    }
+
+    private record DraftState(Long uid, long baseRevision, String mdContent, String htmlContent, long editTime,
+                              List<List<DraftPatch.Edit>> ops) {
+        long revision() {
+            return baseRevision + ops.size();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.service;
+
+import com.example.common.events.ArticleChangedEvent;
+import com.example.common.utils.ETagUtil;
+import com.example.common.utils.LruCache;
+import com.example.entity.Article;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 文章详情的预编码响应体
+ * 文章保存后序列化并压缩一次，读请求按Accept-Encoding直接写出对应的字节，
+ * 不再为每个请求重复执行JSON序列化和gzip压缩。
+ * 响应体中的浏览量是编码时的快照，缓存过期后重新编码时刷新。
+ */
+@Slf4j
+@Component
+public class ArticlePayloadCache {
+
+    // 小于该字节数时压缩收益不明显，只保存原文
+    private static final int MIN_COMPRESS_BYTES = 1024;
+    private static final long PAYLOAD_BASE_WEIGHT = 128;
+
+    public record Payload(String etag, long lastModified, byte[] identity, byte[] gzip) {
+    }
+
+    private final ArticleService articleService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final LruCache<Long, Payload> payloads;
+    // 同一篇文章并发未命中时只编码一次
+    private final ConcurrentHashMap<Long, CompletableFuture<Payload>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder encodes = new LongAdder();
+    private final LongAdder gzipServed = new LongAdder();
+    private final LongAdder identityServed = new LongAdder();
+
+    public ArticlePayloadCache(ArticleService articleService,
+                               ObjectMapper objectMapper,
+                               @Value("${blog.cache.article-payload.enabled:true}") boolean enabled,
+                               @Value("${blog.cache.article-payload.max-bytes:33554432}") long maxBytes,
+                               @Value("${blog.cache.article-payload.ttl-seconds:60}") long ttlSeconds) {
+        this.articleService = articleService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.payloads = new LruCache<>(maxBytes, TimeUnit.SECONDS.toMillis(ttlSeconds), ArticlePayloadCache::weigh);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取文章的预编码响应体，未命中时加载文章并编码
+     *
+     * @return 文章不存在时返回null
+     */
+    public Payload get(Long aid) {
+        Payload payload = payloads.get(aid);
+        if (payload != null) {
+            return payload;
+        }
+        CompletableFuture<Payload> future = new CompletableFuture<>();
+        CompletableFuture<Payload> running = inFlight.putIfAbsent(aid, future);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            payload = encode(articleService.getArticleSnapshot(aid));
+            if (payload != null) {
+                payloads.put(aid, payload);
+            }
+            future.complete(payload);
+            return payload;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(aid, future);
+        }
+    }
+
+    /**
+     * 按Accept-Encoding选择要写出的字节
+     *
+     * @return true表示使用gzip编码
+     */
+    public boolean chooseGzip(Payload payload, String acceptEncoding) {
+        boolean gzip = payload.gzip() != null && acceptsGzip(acceptEncoding);
+        (gzip ? gzipServed : identityServed).increment();
+        return gzip;
+    }
+
+    public void evict(Long aid) {
+        payloads.remove(aid);
+    }
+
+    // 保存后立即重新编码，之后的读请求直接命中；详情缓存的监听器先执行，保证读到的是新内容
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArticleChanged(ArticleChangedEvent event) {
+        event.getAids().forEach(this::evict);
+        if (enabled && event.getType() == ArticleChangedEvent.Type.SAVED && event.getArticle() != null) {
+            try {
+                get(event.getArticle().getId());
+            } catch (Exception e) {
+                log.warn("预编码文章响应体失败，文章ID: {}", event.getArticle().getId(), e);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("enabled", enabled);
+        map.put("size", payloads.size());
+        map.put("bytes", payloads.weight());
+        map.put("hits", payloads.hitCount());
+        map.put("misses", payloads.missCount());
+        map.put("encodes", encodes.sum());
+        map.put("gzipServed", gzipServed.sum());
+        map.put("identityServed", identityServed.sum());
+        return map;
+    }
+
+    private Payload encode(Article article) {
+        if (article == null) {
+            return null;
+        }
+        try {
+            byte[] identity = objectMapper.writeValueAsBytes(article);
+            byte[] gzip = identity.length < MIN_COMPRESS_BYTES ? null : gzip(identity);
+            encodes.increment();
+            long lastModified = article.getEditTime() == null ? -1 : article.getEditTime().getTime();
+            return new Payload(ETagUtil.articleETag(article), lastModified, identity, gzip);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("文章序列化失败，文章ID: " + article.getId(), e);
+        }
+    }
+
+    // 只在保存或缓存过期时压缩一次，使用最高压缩级别
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(bos, 8192) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * 解析Accept-Encoding，显式的gzip优先于*，q值大于0时可以使用gzip
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return false;
+        }
+        double gzipQ = -1;
+        double anyQ = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim();
+            boolean gzip = coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip");
+            if (!gzip && !coding.equals("*")) {
+                continue;
+            }
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (gzip) {
+                gzipQ = q;
+            } else {
+                anyQ = q;
+            }
+        }
+        return gzipQ >= 0 ? gzipQ > 0 : anyQ > 0;
+    }
+
+    private static long weigh(Payload payload) {
+        return PAYLOAD_BASE_WEIGHT + payload.identity().length + (payload.gzip() == null ? 0 : payload.gzip().length);
+    }
+}
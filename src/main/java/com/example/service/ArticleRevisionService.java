@@ -0,0 +1,258 @@
+package com.example.service;
+
+import com.example.common.events.ArticleChangedEvent;
+import com.example.common.exceptions.BusinessException;
+import com.example.common.exceptions.ForbiddenException;
+import com.example.common.utils.BinaryDelta;
+import com.example.common.utils.LruCache;
+import com.example.common.utils.Util;
+import com.example.entity.Article;
+import com.example.entity.ArticleRevision;
+import com.example.mapper.ArticleMapper;
+import com.example.mapper.ArticleRevisionMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 文章历史版本
+ * 每隔snapshot-interval个版本保存一次完整快照，其余版本只保存相对上一版本的二进制差量，均经过deflate压缩。
+ * 重建任意版本最多读取一个快照和snapshot-interval - 1个差量。
+ * 每篇文章最新版本的内容保存在进程内，保存时直接与之计算差量，不必每次从快照重建；
+ * 草稿定时合并写回的正文不记录版本，由之后的显式保存一并记录。
+ */
+@Slf4j
+@Service
+public class ArticleRevisionService {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ArticleRevisionMapper revisionMapper;
+    private final ArticleMapper articleMapper;
+    private final int snapshotInterval;
+    // 最新版本号及其内容，其他实例写入了更新的版本时版本号不一致，重新从数据库重建
+    private final LruCache<Long, Latest> latest;
+    // 同一篇文章的版本按顺序写入，不同文章互不阻塞
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private record Latest(int revision, byte[] content) {
+    }
+
+    public ArticleRevisionService(ArticleRevisionMapper revisionMapper,
+                                  ArticleMapper articleMapper,
+                                  @Value("${blog.revision.snapshot-interval:20}") int snapshotInterval,
+                                  @Value("${blog.revision.latest-cache-bytes:16777216}") long latestCacheBytes) {
+        this.revisionMapper = revisionMapper;
+        this.articleMapper = articleMapper;
+        this.snapshotInterval = Math.max(1, snapshotInterval);
+        this.latest = new LruCache<>(latestCacheBytes, 0, l -> l.content().length + 64L);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 文章的全部版本，不含内容
+     */
+    public List<ArticleRevision> getRevisions(Long aid) {
+        checkOwner(aid);
+        return revisionMapper.getRevisionsByAid(aid);
+    }
+
+    /**
+     * 重建指定版本的内容
+     */
+    public ArticleRevision getRevision(Long aid, Integer revision) {
+        checkOwner(aid);
+        List<ArticleRevision> chain = revisionMapper.getRevisionChain(aid, revision);
+        if (chain.isEmpty()) {
+            throw new BusinessException(404, "版本不存在");
+        }
+        ArticleRevision target = chain.getLast();
+        byte[] content = rebuild(chain);
+        String[] parts = decodeContent(content);
+        target.setData(null);
+        target.setMdContent(parts[0]);
+        target.setHtmlContent(parts[1]);
+        return target;
+    }
+
+    // 保存提交后记录新版本；文章彻底删除时一并删除历史
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArticleChanged(ArticleChangedEvent event) {
+        for (Long aid : event.getAids()) {
+            try {
+                switch (event.getType()) {
+                    case SAVED -> {
+                        if (!event.isDraft()) {
+                            record(aid);
+                        }
+                    }
+                    case DELETED -> {
+                        latest.remove(aid);
+                        revisionMapper.deleteRevisionsByAid(aid);
+                    }
+                    default -> {
+                    }
+                }
+            } catch (Exception e) {
+                log.error("记录文章历史版本失败，文章ID: {}", aid, e);
+            }
+        }
+    }
+
+    private void record(Long aid) {
+        synchronized (locks[Math.floorMod(aid, LOCK_STRIPES)]) {
+            Article article = articleMapper.getArticleById(aid);
+            if (article == null) {
+                return;
+            }
+            byte[] content = encodeContent(article.getMdContent(), article.getHtmlContent());
+            ArticleRevision last = revisionMapper.getLatestRevision(aid);
+            ArticleRevision revision = new ArticleRevision();
+            revision.setAid(aid);
+            revision.setTitle(article.getTitle());
+            revision.setEditTime(article.getEditTime());
+            revision.setContentSize(content.length);
+            byte[] snapshot = deflate(content);
+            if (last == null) {
+                revision.setRevision(1);
+                setSnapshot(revision, snapshot);
+            } else {
+                byte[] previous = latestContent(aid, last.getRevision());
+                if (Arrays.equals(previous, content) && Objects.equals(last.getTitle(), article.getTitle())) {
+                    // 只改了分类、标签或状态，正文和标题没有变化
+                    return;
+                }
+                revision.setRevision(last.getRevision() + 1);
+                byte[] delta = deflate(BinaryDelta.encode(previous, content));
+                // 到达快照间隔，或差量不比快照小（整篇重写）时保存完整快照
+                if (revision.getRevision() - last.getBaseRevision() >= snapshotInterval || delta.length >= snapshot.length) {
+                    setSnapshot(revision, snapshot);
+                } else {
+                    revision.setKind(ArticleRevision.KIND_DELTA);
+                    revision.setBaseRevision(last.getBaseRevision());
+                    revision.setData(delta);
+                    revision.setStoredSize(delta.length);
+                }
+            }
+            try {
+                revisionMapper.addRevision(revision);
+                latest.put(aid, new Latest(revision.getRevision(), content));
+            } catch (DuplicateKeyException e) {
+                // 其他实例同时写入了同一版本号，以先写入的为准
+                log.warn("文章历史版本号冲突，文章ID: {}，版本: {}", aid, revision.getRevision());
+            }
+        }
+    }
+
+    // 本实例缓存的就是该版本时直接使用，否则从快照和差量重建
+    private byte[] latestContent(Long aid, int revision) {
+        Latest cached = latest.get(aid);
+        if (cached != null && cached.revision() == revision) {
+            return cached.content();
+        }
+        byte[] content = rebuild(revisionMapper.getRevisionChain(aid, revision));
+        latest.put(aid, new Latest(revision, content));
+        return content;
+    }
+
+    private static void setSnapshot(ArticleRevision revision, byte[] snapshot) {
+        revision.setKind(ArticleRevision.KIND_SNAPSHOT);
+        revision.setBaseRevision(revision.getRevision());
+        revision.setData(snapshot);
+        revision.setStoredSize(snapshot.length);
+    }
+
+    // chain从快照开始按版本号升序排列
+    private static byte[] rebuild(List<ArticleRevision> chain) {
+        byte[] content = null;
+        for (ArticleRevision r : chain) {
+            byte[] data = inflate(r.getData(), r.getKind() == ArticleRevision.KIND_SNAPSHOT ? r.getContentSize() : 0);
+            if (r.getKind() == ArticleRevision.KIND_SNAPSHOT) {
+                content = data;
+            } else {
+                if (content == null) {
+                    throw new IllegalStateException("历史版本缺少起始快照，文章ID: " + r.getAid());
+                }
+                content = BinaryDelta.apply(content, data);
+            }
+        }
+        return content;
+    }
+
+    private void checkOwner(Long aid) {
+        Article article = articleMapper.getArticleById(aid);
+        if (article == null) {
+            throw new BusinessException(404, "文章不存在");
+        }
+        if (!article.getUid().equals(Util.getCurrentUser().getId())) {
+            throw new ForbiddenException(403, "只能查看自己文章的历史版本");
+        }
+    }
+
+    // 内容格式：md字节数(4字节) + md + html
+    private static byte[] encodeContent(String md, String html) {
+        byte[] mdBytes = md == null ? new byte[0] : md.getBytes(StandardCharsets.UTF_8);
+        byte[] htmlBytes = html == null ? new byte[0] : html.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + mdBytes.length + htmlBytes.length)
+                .putInt(mdBytes.length).put(mdBytes).put(htmlBytes).array();
+    }
+
+    private static String[] decodeContent(byte[] content) {
+        int mdLength = ByteBuffer.wrap(content).getInt();
+        return new String[]{
+                new String(content, 4, mdLength, StandardCharsets.UTF_8),
+                new String(content, 4 + mdLength, content.length - 4 - mdLength, StandardCharsets.UTF_8)
+        };
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int sizeHint) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, sizeHint > 0 ? sizeHint : data.length * 4));
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("历史版本数据不完整");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("历史版本数据损坏", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,16 +1,34 @@
 package com.example.service;
 
+import com.example.common.events.ArticleChangedEvent;
+import com.example.common.exceptions.BadRequestException;
 import com.example.common.exceptions.BusinessException;
+import com.example.common.exceptions.ForbiddenException;
 import com.example.entity.Article;
+import com.example.entity.ArticlePage;
+import com.example.entity.ArticleValidator;
 import com.example.mapper.ArticleMapper;
 import com.example.mapper.TagMapper;
+import com.example.search.ArticleSearchIndex;
+import com.example.search.RelatedArticleIndex;
+import com.example.common.utils.ETagUtil;
+import com.example.common.utils.HtmlUtil;
+import com.example.common.utils.PageCursor;
 import com.example.common.utils.Util;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @Slf4j
@@ -20,10 +38,41 @@ public class ArticleService {
     private static final int SUMMARY_LENGTH = 50;
     private final ArticleMapper articleMapper;
     private final TagMapper tagsMapper;
+    private final PageViewCounterService pageViewCounter;
+    private final TrendingService trendingService;
+    private final UniqueVisitorService uniqueVisitorService;
+    private final PvRollupService pvRollupService;
+    private final ArticleDetailCache articleDetailCache;
+    private final ArticleSearchIndex searchIndex;
+    private final RelatedArticleIndex relatedIndex;
+    private final ArticleCountCache articleCountCache;
+    private final TagDictionary tagDictionary;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public ArticleService(ArticleMapper articleMapper, TagMapper tagsMapper) {
+    public ArticleService(ArticleMapper articleMapper,
+                          TagMapper tagsMapper,
+                          PageViewCounterService pageViewCounter,
+                          TrendingService trendingService,
+                          UniqueVisitorService uniqueVisitorService,
+                          PvRollupService pvRollupService,
+                          ArticleDetailCache articleDetailCache,
+                          ArticleSearchIndex searchIndex,
+                          RelatedArticleIndex relatedIndex,
+                          ArticleCountCache articleCountCache,
+                          TagDictionary tagDictionary,
+                          ApplicationEventPublisher eventPublisher) {
         this.articleMapper = articleMapper;
         this.tagsMapper = tagsMapper;
+        this.pageViewCounter = pageViewCounter;
+        this.trendingService = trendingService;
+        this.uniqueVisitorService = uniqueVisitorService;
+        this.pvRollupService = pvRollupService;
+        this.articleDetailCache = articleDetailCache;
+        this.searchIndex = searchIndex;
+        this.relatedIndex = relatedIndex;
+        this.articleCountCache = articleCountCache;
+        this.tagDictionary = tagDictionary;
+        this.eventPublisher = eventPublisher;
     }
 
     public void addNewArticle(Article article) {
@@ -31,13 +80,15 @@ public class ArticleService {
         handleSummary(article);
         setTimestampsAndUid(article);
 
-        if (article.getId() == -1) {
+        boolean isNew = article.getId() == -1;
+        if (isNew) {
             executeInsert(article);
         } else {
             executeUpdate(article);
         }
 
-        handleTags(article);
+        handleTags(article, isNew);
+        eventPublisher.publishEvent(ArticleChangedEvent.saved(article));
     }
 
     private void validateArticle(Article article) {
@@ -49,8 +100,8 @@ public class ArticleService {
 
     private void handleSummary(Article article) {
         if (article.getSummary() == null || article.getSummary().isEmpty()) {
-            String stripHtml = stripHtml(article.getHtmlContent());
-            article.setSummary(stripHtml.substring(0, Math.min(stripHtml.length(), SUMMARY_LENGTH)));
+            // 只解析到摘要所需的字符数为止
+            article.setSummary(HtmlUtil.extractText(article.getHtmlContent(), SUMMARY_LENGTH));
         }
     }
 
@@ -77,22 +128,36 @@ public class ArticleService {
         }
     }
 
-    private void handleTags(Article article) {
+    private void handleTags(Article article, boolean isNew) {
         String[] dynamicTags = article.getDynamicTags();
         if (dynamicTags != null && dynamicTags.length > 0) {
-            int tagsResult = addTagsToArticle(dynamicTags, article.getId());
+            int tagsResult = reconcileTags(dynamicTags, article.getId(), isNew);
             if (tagsResult != dynamicTags.length) {
                 throw new BusinessException(500, "文章标签添加失败");
             }
         }
     }
 
-    private int addTagsToArticle(String[] dynamicTags, Long aid) {
+    /**
+     * 对比文章现有标签，只删除去掉的关联、插入新增的关联
+     *
+     * @return 成功解析的标签数
+     */
+    private int reconcileTags(String[] dynamicTags, Long aid, boolean isNew) {
         try {
-            tagsMapper.deleteTagsByAid(aid);
-            tagsMapper.saveTags(dynamicTags);
-            List<Long> tIds = tagsMapper.getTagsIdByTagName(dynamicTags);
-            return tagsMapper.saveTags2ArticleTags(tIds, aid);
+            Map<String, Long> resolved = tagDictionary.resolve(Arrays.asList(dynamicTags));
+            Set<Long> desired = new LinkedHashSet<>(resolved.values());
+            Set<Long> current = isNew ? Set.of() : new HashSet<>(tagsMapper.getTagIdsByAid(aid));
+
+            List<Long> toRemove = current.stream().filter(tid -> !desired.contains(tid)).toList();
+            List<Long> toAdd = desired.stream().filter(tid -> !current.contains(tid)).toList();
+            if (!toRemove.isEmpty()) {
+                tagsMapper.deleteArticleTags(aid, toRemove);
+            }
+            if (!toAdd.isEmpty()) {
+                tagsMapper.saveTags2ArticleTags(toAdd, aid);
+            }
+            return resolved.size();
         } catch (Exception e) {
             log.error("给文章添加标签时出现异常，文章ID: {}", aid, e);
             throw new BusinessException(500, "给文章添加标签时出现异常");
@@ -100,12 +165,7 @@ public class ArticleService {
     }
 
     public String stripHtml(String content) {
-        if (content == null) {
-            return "";
-        }
-        return content.replaceAll("<p .*?>", "")
-                .replaceAll("<br\\s*/?>", "")
-                .replaceAll("<.*?>", "");
+        return HtmlUtil.stripHtml(content);
     }
 
     public List<Article> getArticleByState(Integer state, Integer page, Integer count, String keywords) {
@@ -113,6 +173,9 @@ public class ArticleService {
         int start = (page - 1) * count;
         Long uid = Util.getCurrentUser().getId();
         try {
+            if (useSearchIndex(keywords)) {
+                return getArticleListByIds(searchArticles(state, uid, keywords, start, count).aids());
+            }
             return articleMapper.getArticleByState(state, start, count, uid, keywords);
         } catch (Exception e) {
             log.error("获取文章列表时出现异常，状态: {}, 页码: {}, 每页数量: {}, 关键词: {}", state, page, count, keywords, e);
@@ -120,6 +183,129 @@ public class ArticleService {
         }
     }
 
+    /**
+     * 页码分页获取文章列表及总数
+     * 总数命中缓存时只查询一页；未命中时用窗口函数在同一条SQL中带回总数并写入缓存
+     */
+    public ArticlePage getArticlePage(Integer state, Integer page, Integer count, String keywords) {
+        validatePaginationParams(state, page, count);
+        int start = (page - 1) * count;
+        Long uid = Util.getCurrentUser().getId();
+        Long scopeUid = state == -2 ? null : uid;
+        try {
+            if (useSearchIndex(keywords)) {
+                ArticleSearchIndex.SearchResult result = searchArticles(state, uid, keywords, start, count);
+                return new ArticlePage(getArticleListByIds(result.aids()), result.total(), null);
+            }
+            Integer total = articleCountCache.get(scopeUid, state, keywords);
+            if (total != null) {
+                return new ArticlePage(articleMapper.getArticleByState(state, start, count, uid, keywords), total, null);
+            }
+            List<Article> articles = articleMapper.getArticleByStateWithTotal(state, start, count, uid, keywords);
+            if (!articles.isEmpty()) {
+                total = articles.getFirst().getTotalCount();
+            } else if (start == 0) {
+                total = 0;
+            } else {
+                // 页码超出范围时当前页没有行可带回总数，单独取一次
+                List<Article> first = articleMapper.getArticleByStateWithTotal(state, 0, 1, uid, keywords);
+                total = first.isEmpty() ? 0 : first.getFirst().getTotalCount();
+            }
+            articleCountCache.put(scopeUid, state, keywords, total);
+            return new ArticlePage(articles, total, null);
+        } catch (Exception e) {
+            log.error("获取文章列表时出现异常，状态: {}, 页码: {}, 每页数量: {}, 关键词: {}", state, page, count, keywords, e);
+            throw new BusinessException(500, "获取文章列表时出现异常");
+        }
+    }
+
+    // state=-2为管理员查看所有已发布文章，-1为当前作者的全部文章
+    private ArticleSearchIndex.SearchResult searchArticles(Integer state, Long uid, String keywords, int start, int count) {
+        return searchIndex.search(keywords,
+                state == -2 ? null : uid,
+                state == -2 ? Integer.valueOf(1) : (state == -1 ? null : state),
+                start, count);
+    }
+
+    /**
+     * 游标分页获取文章列表，耗时与翻到第几页无关
+     *
+     * @param cursor 上一页返回的nextCursor，空字符串表示第一页
+     */
+    public ArticlePage getArticlePageByCursor(Integer state, String cursor, Integer count, String keywords) {
+        if (state == null || count == null || count <= 0) {
+            log.error("游标分页获取文章列表时，状态或每页数量参数为空");
+            throw new BusinessException(400, "获取文章列表时，状态或每页数量参数为空");
+        }
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        Long uid = Util.getCurrentUser().getId();
+        try {
+            // 多取一条用于判断是否还有下一页
+            List<Article> articles = articleMapper.getArticleByStateAfter(state,
+                    pageCursor == null ? null : pageCursor.editTime(),
+                    pageCursor == null ? null : pageCursor.id(),
+                    count + 1, uid, keywords);
+            String nextCursor = null;
+            if (articles.size() > count) {
+                articles = articles.subList(0, count);
+                nextCursor = PageCursor.encode(articles.get(count - 1));
+            }
+            return new ArticlePage(articles, countForPage(state, uid, keywords), nextCursor);
+        } catch (Exception e) {
+            log.error("游标分页获取文章列表时出现异常，状态: {}, 游标: {}, 每页数量: {}, 关键词: {}", state, cursor, count, keywords, e);
+            throw new BusinessException(500, "获取文章列表时出现异常");
+        }
+    }
+
+    // 与页码分页相同口径的总数，state=-2时按所有作者统计，计数缓存的范围为null
+    private int countForPage(Integer state, Long uid, String keywords) {
+        if (useSearchIndex(keywords)) {
+            return searchArticles(state, uid, keywords, 0, 0).total();
+        }
+        Long scopeUid = state == -2 ? null : uid;
+        Integer total = articleCountCache.get(scopeUid, state, keywords);
+        if (total == null) {
+            List<Article> first = articleMapper.getArticleByStateWithTotal(state, 0, 1, uid, keywords);
+            total = first.isEmpty() ? 0 : first.getFirst().getTotalCount();
+            articleCountCache.put(scopeUid, state, keywords, total);
+        }
+        return total;
+    }
+
+    // 全文索引就绪后关键词检索走倒排索引，否则回退到数据库LIKE查询
+    private boolean useSearchIndex(String keywords) {
+        return keywords != null && !keywords.isBlank() && searchIndex.isReady();
+    }
+
+    /**
+     * 按标签共现计算的相关文章，按相似度降序
+     */
+    public List<Article> getRelatedArticles(Long aid, Integer count) {
+        if (count == null || count <= 0 || count > 50) {
+            throw new BadRequestException(400, "数量应在1到50之间");
+        }
+        return getArticleListByIds(relatedIndex.related(aid, count));
+    }
+
+    // 按传入ID的顺序返回文章列表
+    private List<Article> getArticleListByIds(List<Long> aids) {
+        if (aids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Article> byId = new HashMap<>();
+        for (Article article : articleMapper.getArticleListByIds(aids)) {
+            byId.put(article.getId(), article);
+        }
+        List<Article> articles = new ArrayList<>(aids.size());
+        for (Long aid : aids) {
+            Article article = byId.get(aid);
+            if (article != null) {
+                articles.add(article);
+            }
+        }
+        return articles;
+    }
+
     private void validatePaginationParams(Integer state, Integer page, Integer count) {
         if (state == null || page == null || count == null) {
             log.error("获取文章列表时，状态、页码或每页数量参数为空");
@@ -130,7 +316,16 @@ public class ArticleService {
     public int getArticleCountByState(Integer state, Long uid, String keywords) {
         validateArticleCountParams(state, uid);
         try {
-            return articleMapper.getArticleCountByState(state, uid, keywords);
+            if (useSearchIndex(keywords)) {
+                return searchIndex.count(keywords, uid, state == -1 ? null : state);
+            }
+            Integer cached = articleCountCache.get(uid, state, keywords);
+            if (cached != null) {
+                return cached;
+            }
+            int total = articleMapper.getArticleCountByState(state, uid, keywords);
+            articleCountCache.put(uid, state, keywords, total);
+            return total;
         } catch (Exception e) {
             log.error("获取文章数量时出现异常，状态: {}, 用户ID: {}, 关键词: {}", state, uid, keywords, e);
             throw new BusinessException(500, "获取文章数量时出现异常");
@@ -152,11 +347,13 @@ public class ArticleService {
                 if (result != aids.length) {
                     throw new BusinessException(500, "文章删除失败");
                 }
+                eventPublisher.publishEvent(ArticleChangedEvent.deleted(Arrays.asList(aids), Util.getCurrentUser().getId()));
             } else {
                 int result = articleMapper.updateArticleState(aids, 1);
                 if (result != aids.length) {
                     throw new BusinessException(500, "文章状态更新失败");
                 }
+                eventPublisher.publishEvent(ArticleChangedEvent.stateChanged(Arrays.asList(aids), Util.getCurrentUser().getId(), 1));
             }
         } catch (Exception e) {
             log.error("更新文章状态时出现异常，文章ID数组: {}, 状态: {}", aids, state, e);
@@ -181,6 +378,7 @@ public class ArticleService {
             if (result != 1) {
                 throw new BusinessException(500, "文章还原失败");
             }
+            eventPublisher.publishEvent(ArticleChangedEvent.stateChanged(List.of(articleId.longValue()), Util.getCurrentUser().getId(), 1));
         } catch (Exception e) {
             log.error("还原文章时出现异常，文章ID: {}", articleId, e);
             throw new BusinessException(500, "还原文章时出现异常");
@@ -193,8 +391,12 @@ public class ArticleService {
             throw new BusinessException(400, "获取文章详情时，文章ID参数为空");
         }
         try {
-            Article article = articleMapper.getArticleById(aid);
-            articleMapper.pvIncrement(aid);
+            Article article = getArticleSnapshot(aid);
+            // 浏览量先计入内存计数器，由PageViewCounterService批量写回；
+            // 只统计存在的文章，否则任意ID都会在计数器中留下永不清理的条目
+            if (article != null) {
+                countView(aid);
+            }
             return article;
         } catch (Exception e) {
             log.error("获取文章详情时出现异常，文章ID: {}", aid, e);
@@ -202,32 +404,96 @@ public class ArticleService {
         }
     }
 
-    public void pvStatisticsPerDay() {
-        try {
-            articleMapper.pvStatisticsPerDay();
-        } catch (Exception e) {
-            log.error("每日PV统计时出现异常", e);
-            throw new BusinessException(500, "每日PV统计时出现异常");
+    /**
+     * 读取文章详情并合并未写回的浏览量，不计入本次浏览
+     *
+     * @return 文章不存在时返回null
+     */
+    public Article getArticleSnapshot(Long aid) {
+        Article article = articleDetailCache.get(aid, this::loadArticleDetail);
+        if (article != null) {
+            article.setPageView(pageViewCounter.mergePageView(aid, article.getPageView()));
         }
+        return article;
     }
 
-    public List<String> getCategories() {
-        Long uid = Util.getCurrentUser().getId();
-        try {
-            return articleMapper.getCategories(uid);
-        } catch (Exception e) {
-            log.error("获取文章分类时出现异常，用户ID: {}", uid, e);
-            throw new BusinessException(500, "获取文章分类时出现异常");
+    /**
+     * 查询文章详情的ETag和Last-Modified，本实例已缓存时直接由缓存计算，否则只查询editTime、状态和标签ID
+     *
+     * @return 文章不存在时返回null
+     */
+    public ArticleValidator getArticleValidator(Long aid) {
+        Article cached = articleDetailCache.peek(aid);
+        if (cached != null) {
+            return new ArticleValidator(aid, cached.getEditTime(), cached.getState(), ETagUtil.joinTagIds(cached.getTags()));
         }
+        return articleMapper.getArticleValidator(aid);
     }
 
-    public List<Integer> getDataStatistics() {
+    /**
+     * 条件请求命中304时不返回正文，浏览量仍然计入
+     */
+    public void recordPageView(Long aid) {
+        countView(aid);
+    }
+
+    // 浏览量、热门排行和独立访客都只在内存中累加，由各自的定时任务批量写出
+    private void countView(Long aid) {
+        pageViewCounter.record(aid);
+        trendingService.record(aid);
+        uniqueVisitorService.record(aid, Util.getVisitorId());
+    }
+
+    // 文章正文只查一行，标签单独查询
+    private Article loadArticleDetail(Long aid) {
+        Article article = articleMapper.getArticleById(aid);
+        if (article != null) {
+            article.setTags(tagDictionary.toTags(tagsMapper.getTagIdsByAid(aid)));
+        }
+        return article;
+    }
+
+    /**
+     * 当前用户的浏览量和独立访客数，day为最近days天，hour为最近24小时
+     */
+    public Map<String, Object> getDataStatistics(String granularity, int days) {
         Long uid = Util.getCurrentUser().getId();
         try {
-            return articleMapper.getDataStatistics(uid);
+            return pvRollupService.getUserStatistics(uid, granularity, days);
+        } catch (BadRequestException e) {
+            throw e;
         } catch (Exception e) {
             log.error("获取数据统计信息时出现异常，用户ID: {}", uid, e);
             throw new BusinessException(500, "获取数据统计信息时出现异常");
         }
     }
+
+    /**
+     * 自己文章的浏览量，day为最近7天，hour为最近24小时
+     */
+    public Map<String, Object> getArticleStatistics(Long aid, String granularity) {
+        checkOwnArticle(aid, "只能查看自己文章的浏览统计");
+        return pvRollupService.getArticleStatistics(aid, granularity);
+    }
+
+    /**
+     * 自己文章最近几天每天的独立访客数
+     */
+    public Map<String, Long> getArticleVisitors(Long aid, int days) {
+        if (days < 1 || days > uniqueVisitorService.getRetentionDays()) {
+            throw new BadRequestException(400, "天数应在1到" + uniqueVisitorService.getRetentionDays() + "之间");
+        }
+        checkOwnArticle(aid, "只能查看自己文章的访客统计");
+        return uniqueVisitorService.getArticleVisitors(aid, days);
+    }
+
+    private void checkOwnArticle(Long aid, String message) {
+        Article article = getArticleSnapshot(aid);
+        if (article == null) {
+            throw new BusinessException(404, "文章不存在");
+        }
+        if (!article.getUid().equals(Util.getCurrentUser().getId())) {
+            throw new ForbiddenException(403, message);
+        }
+    }
 }
@@ -0,0 +1,337 @@
+package com.example.service;
+
+import com.example.common.events.ArticleChangedEvent;
+import com.example.common.utils.FileResponseUtil;
+import com.example.entity.Article;
+import com.example.mapper.ArticleMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 已发布文章的静态快照
+ * 文章发布或修改提交后，后台线程把预编码的响应体写成不可变文件（文件名包含ETag），
+ * 读请求命中时直接以sendfile发送文件，不再经过MyBatis和Jackson；未命中时走动态路径并排队生成快照。
+ * 快照只属于本实例，每次使用前与校验信息比对ETag，其他实例修改过的文章会被识别为过期。
+ */
+@Slf4j
+@Service
+public class ArticleSnapshotService {
+
+    private static final String JSON_SUFFIX = ".json";
+    private static final String GZIP_SUFFIX = ".json.gz";
+    private static final int PUBLISHED = 1;
+    // 被替换的快照延迟删除，等待仍在用sendfile发送旧文件的请求结束
+    private static final long DELETE_GRACE_MILLIS = 60_000;
+
+    public record Snapshot(Long aid, String etag, long lastModified,
+                           Path identity, long identityLength,
+                           Path gzip, long gzipLength,
+                           long createdAt) {
+    }
+
+    private record Obsolete(Path file, long since) {
+    }
+
+    private final ArticleService articleService;
+    private final ArticlePayloadCache articlePayloadCache;
+    private final ArticleMapper articleMapper;
+    private final boolean enabled;
+    private final Path dir;
+    private final long refreshMillis;
+
+    private final ConcurrentHashMap<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Obsolete> obsolete = new ConcurrentLinkedQueue<>();
+    // 单线程执行，同一篇文章的生成和删除按提交顺序进行
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("article-snapshot-writer").daemon().factory());
+    private volatile boolean ready = false;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ArticleSnapshotService(ArticleService articleService,
+                                  ArticlePayloadCache articlePayloadCache,
+                                  ArticleMapper articleMapper,
+                                  @Value("${blog.snapshot.enabled:true}") boolean enabled,
+                                  @Value("${blog.snapshot.dir:./data/snapshot}") String dir,
+                                  @Value("${blog.snapshot.refresh-seconds:300}") long refreshSeconds) {
+        this.articleService = articleService;
+        this.articlePayloadCache = articlePayloadCache;
+        this.articleMapper = articleMapper;
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.refreshMillis = TimeUnit.SECONDS.toMillis(refreshSeconds);
+    }
+
+    /**
+     * 查找与当前ETag一致的快照
+     * 未命中或已过期时排队重新生成，本次请求由调用方走动态路径
+     *
+     * @param etag 由校验信息计算的当前ETag，为null表示文章不存在
+     */
+    public Snapshot find(Long aid, String etag) {
+        if (!ready || etag == null) {
+            return null;
+        }
+        Snapshot snapshot = snapshots.get(aid);
+        if (snapshot == null || !snapshot.etag().equals(etag)) {
+            misses.increment();
+            schedule(aid);
+            return null;
+        }
+        // 响应体中的浏览量是生成时的快照，定期刷新
+        if (System.currentTimeMillis() - snapshot.createdAt() > refreshMillis) {
+            schedule(aid);
+        }
+        hits.increment();
+        return snapshot;
+    }
+
+    /**
+     * 写出快照，按Accept-Encoding选择gzip或原文
+     */
+    public void send(Snapshot snapshot, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HttpHeaders.ETAG, snapshot.etag());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (snapshot.lastModified() > 0) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, snapshot.lastModified());
+        }
+        if (snapshot.gzip() != null && ArticlePayloadCache.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            FileResponseUtil.sendFile(request, response, snapshot.gzip(), 0, snapshot.gzipLength());
+        } else {
+            FileResponseUtil.sendFile(request, response, snapshot.identity(), 0, snapshot.identityLength());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArticleChanged(ArticleChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        for (Long aid : event.getAids()) {
+            if (event.getType() == ArticleChangedEvent.Type.DELETED
+                    || (event.getType() == ArticleChangedEvent.Type.STATE_CHANGED && !Objects.equals(event.getState(), PUBLISHED))) {
+                writer.execute(() -> remove(aid));
+            } else {
+                // 新增、修改或发布，由生成任务按提交后的状态决定写入还是删除
+                schedule(aid);
+            }
+        }
+    }
+
+    // 启动时载入已有快照文件，删除已不再发布的文章的快照
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                Files.createDirectories(dir);
+                loadExisting();
+                ready = true;
+                log.info("文章快照就绪，快照数: {}", snapshots.size());
+            } catch (Exception e) {
+                log.error("文章快照加载失败，文章详情将全部走动态路径", e);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void deleteObsolete() {
+        long now = System.currentTimeMillis();
+        Obsolete head;
+        while ((head = obsolete.peek()) != null && now - head.since() > DELETE_GRACE_MILLIS) {
+            obsolete.poll();
+            if (!isLive(head.file())) {
+                deleteQuietly(head.file());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("enabled", enabled);
+        map.put("ready", ready);
+        map.put("snapshots", snapshots.size());
+        map.put("pending", pending.size());
+        map.put("hits", hits.sum());
+        map.put("misses", misses.sum());
+        return map;
+    }
+
+    private void schedule(Long aid) {
+        if (enabled && pending.add(aid)) {
+            writer.execute(() -> {
+                pending.remove(aid);
+                try {
+                    generate(aid);
+                } catch (Exception e) {
+                    log.warn("生成文章快照失败，文章ID: {}", aid, e);
+                }
+            });
+        }
+    }
+
+    private void generate(Long aid) throws IOException {
+        Article article = articleService.getArticleSnapshot(aid);
+        if (article == null || !Objects.equals(article.getState(), PUBLISHED)) {
+            remove(aid);
+            return;
+        }
+        ArticlePayloadCache.Payload payload = articlePayloadCache.get(aid);
+        if (payload == null) {
+            remove(aid);
+            return;
+        }
+        String name = fileName(payload.etag());
+        Path identity = write(name + JSON_SUFFIX, payload.identity(), payload.lastModified());
+        Path gzip = payload.gzip() == null ? null : write(name + GZIP_SUFFIX, payload.gzip(), payload.lastModified());
+        Snapshot snapshot = new Snapshot(aid, payload.etag(), payload.lastModified(),
+                identity, payload.identity().length,
+                gzip, payload.gzip() == null ? 0 : payload.gzip().length,
+                System.currentTimeMillis());
+        retire(snapshots.put(aid, snapshot), snapshot);
+    }
+
+    // 先写临时文件再原子改名，读请求不会看到写了一半的文件
+    private Path write(String name, byte[] data, long lastModified) throws IOException {
+        Path target = dir.resolve(name);
+        Path tmp = dir.resolve(name + ".tmp");
+        Files.write(tmp, data);
+        if (lastModified > 0) {
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(lastModified));
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    private void remove(Long aid) {
+        retire(snapshots.remove(aid), null);
+    }
+
+    private void retire(Snapshot old, Snapshot current) {
+        if (old == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // ETag未变时文件名相同，新文件已覆盖旧文件，不能删除
+        if (current == null || !old.identity().equals(current.identity())) {
+            obsolete.add(new Obsolete(old.identity(), now));
+            if (old.gzip() != null) {
+                obsolete.add(new Obsolete(old.gzip(), now));
+            }
+        }
+    }
+
+    private void loadExisting() throws IOException {
+        Set<Long> published = new HashSet<>();
+        for (Article stamp : articleMapper.getArticleStamps()) {
+            if (Objects.equals(stamp.getState(), PUBLISHED)) {
+                published.add(stamp.getId());
+            }
+        }
+        Map<Long, List<Path>> files = new HashMap<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.forEach(file -> {
+                String name = file.getFileName().toString();
+                boolean snapshotFile = name.endsWith(JSON_SUFFIX) || name.endsWith(GZIP_SUFFIX);
+                Long aid = snapshotFile ? parseAid(name) : null;
+                if (aid == null || !published.contains(aid)) {
+                    // 临时文件、无法识别的文件以及已撤回文章的快照
+                    deleteQuietly(file);
+                } else if (name.endsWith(JSON_SUFFIX)) {
+                    files.computeIfAbsent(aid, _ -> new ArrayList<>()).add(file);
+                }
+            });
+        }
+        for (Map.Entry<Long, List<Path>> entry : files.entrySet()) {
+            Long aid = entry.getKey();
+            List<Path> list = entry.getValue();
+            if (list.size() != 1) {
+                // 同一篇文章残留多个版本时全部删除，下次访问时重新生成
+                for (Path identity : list) {
+                    deleteQuietly(identity);
+                    deleteQuietly(dir.resolve(baseName(identity) + GZIP_SUFFIX));
+                }
+                continue;
+            }
+            Path identity = list.getFirst();
+            String base = baseName(identity);
+            Path gzip = dir.resolve(base + GZIP_SUFFIX);
+            boolean hasGzip = Files.exists(gzip);
+            snapshots.put(aid, new Snapshot(aid, "W/\"" + base + "\"",
+                    Files.getLastModifiedTime(identity).toMillis(),
+                    identity, Files.size(identity),
+                    hasGzip ? gzip : null, hasGzip ? Files.size(gzip) : 0,
+                    System.currentTimeMillis()));
+        }
+    }
+
+    private static String baseName(Path identity) {
+        String name = identity.getFileName().toString();
+        return name.substring(0, name.length() - JSON_SUFFIX.length());
+    }
+
+    // 状态反复切换时可能重新生成同名文件，仍被引用的文件不能删除
+    private boolean isLive(Path file) {
+        Long aid = parseAid(file.getFileName().toString());
+        Snapshot snapshot = aid == null ? null : snapshots.get(aid);
+        return snapshot != null && (file.equals(snapshot.identity()) || file.equals(snapshot.gzip()));
+    }
+
+    // 快照文件名为去掉W/前缀和引号的ETag，形如"<aid>-<摘要>"
+    private static String fileName(String etag) {
+        return etag.substring(etag.indexOf('"') + 1, etag.length() - 1);
+    }
+
+    private static Long parseAid(String name) {
+        int dash = name.indexOf('-');
+        if (dash <= 0) {
+            return null;
+        }
+        try {
+            return Long.parseLong(name.substring(0, dash));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除文章快照文件失败: {}", file, e);
+        }
+    }
+}
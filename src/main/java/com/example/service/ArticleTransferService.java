@@ -0,0 +1,244 @@
+package com.example.service;
+
+import com.example.common.events.ArticleChangedEvent;
+import com.example.common.exceptions.BusinessException;
+import com.example.common.utils.HtmlUtil;
+import com.example.entity.Article;
+import com.example.entity.ArticleTag;
+import com.example.entity.Category;
+import com.example.entity.TransferProgress;
+import com.example.mapper.ArticleMapper;
+import com.example.mapper.CategoryMapper;
+import com.example.mapper.TagMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 文章批量导入导出（NDJSON，每行一篇文章）
+ * 导入逐行解析，按块在独立事务中批量写入文章和标签关联；导出通过MyBatis游标流式读取直接写出，
+ * 流式读取占用当前连接，每块的标签在另一个连接上查询。
+ */
+@Slf4j
+@Service
+public class ArticleTransferService {
+
+    private static final int SUMMARY_LENGTH = 50;
+
+    private final ArticleMapper articleMapper;
+    private final TagMapper tagMapper;
+    private final CategoryMapper categoryMapper;
+    private final TagDictionary tagDictionary;
+    private final TransactionTemplate transactionTemplate;
+    // 挂起导出事务，在新的连接上查询标签
+    private final TransactionTemplate tagLookupTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public ArticleTransferService(ArticleMapper articleMapper,
+                                  TagMapper tagMapper,
+                                  CategoryMapper categoryMapper,
+                                  TagDictionary tagDictionary,
+                                  TransactionTemplate transactionTemplate,
+                                  ApplicationEventPublisher eventPublisher,
+                                  ObjectMapper objectMapper,
+                                  @Value("${blog.transfer.chunk-size:100}") int chunkSize) {
+        this.articleMapper = articleMapper;
+        this.tagMapper = tagMapper;
+        this.categoryMapper = categoryMapper;
+        this.tagDictionary = tagDictionary;
+        this.transactionTemplate = transactionTemplate;
+        this.tagLookupTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.tagLookupTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.tagLookupTemplate.setReadOnly(true);
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 导入文章，每提交一块回调一次进度
+     *
+     * @param uid 导入到的作者
+     */
+    public TransferProgress importArticles(InputStream in, Long uid, Consumer<TransferProgress> progressListener) {
+        TransferProgress progress = new TransferProgress();
+        List<Article> chunk = new ArrayList<>(chunkSize);
+        // 分类数量很少，导入开始时读取一次，逐行校验，避免一行分类错误导致整块写入失败
+        Set<Long> cids = new HashSet<>();
+        for (Category category : categoryMapper.getAllCategories()) {
+            cids.add(category.getId());
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                progress.setLines(progress.getLines() + 1);
+                Article article = parseLine(line, cids, progress);
+                if (article == null) {
+                    continue;
+                }
+                prepare(article, uid);
+                chunk.add(article);
+                if (chunk.size() == chunkSize) {
+                    writeChunk(chunk, uid, progress);
+                    progressListener.accept(progress);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            log.error("读取导入数据失败，已读取行数: {}", progress.getLines(), e);
+            throw new BusinessException(400, "读取导入数据失败");
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, uid, progress);
+        }
+        progress.setDone(true);
+        progressListener.accept(progress);
+        return progress;
+    }
+
+    /**
+     * 导出作者的全部文章，游标逐行流式读取，每块批量查询一次标签
+     */
+    @Transactional(readOnly = true)
+    public void exportArticles(Long uid, OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        List<Article> chunk = new ArrayList<>(chunkSize);
+        try (Cursor<Article> cursor = articleMapper.streamArticlesByUid(uid)) {
+            for (Article article : cursor) {
+                chunk.add(article);
+                if (chunk.size() == chunkSize) {
+                    writeExportChunk(chunk, writer, out);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeExportChunk(chunk, writer, out);
+        }
+        out.flush();
+    }
+
+    private Article parseLine(String line, Set<Long> cids, TransferProgress progress) {
+        try {
+            Article article = objectMapper.readValue(line, Article.class);
+            if (article.getTitle() == null || article.getCid() == null) {
+                fail(progress, "第" + progress.getLines() + "行缺少标题或分类");
+                return null;
+            }
+            if (!cids.contains(article.getCid())) {
+                fail(progress, "第" + progress.getLines() + "行的分类不存在: " + article.getCid());
+                return null;
+            }
+            // 只能导入为草稿或已发布，回收站等其他状态不接受
+            if (article.getState() != null && article.getState() != 0 && article.getState() != 1) {
+                fail(progress, "第" + progress.getLines() + "行的状态只能是0（草稿）或1（已发布）");
+                return null;
+            }
+            return article;
+        } catch (JsonProcessingException e) {
+            fail(progress, "第" + progress.getLines() + "行不是合法的JSON: " + e.getOriginalMessage());
+            return null;
+        }
+    }
+
+    private void prepare(Article article, Long uid) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        article.setId(null);
+        article.setUid(uid);
+        if (article.getState() == null) {
+            article.setState(0);
+        }
+        if (article.getEditTime() == null) {
+            article.setEditTime(now);
+        }
+        if (article.getState() == 1 && article.getPublishDate() == null) {
+            article.setPublishDate(now);
+        }
+        if (article.getSummary() == null || article.getSummary().isEmpty()) {
+            article.setSummary(HtmlUtil.extractText(article.getHtmlContent(), SUMMARY_LENGTH));
+        }
+    }
+
+    private void writeChunk(List<Article> chunk, Long uid, TransferProgress progress) {
+        try {
+            List<Long> aids = transactionTemplate.execute(_ -> insertChunk(chunk, uid));
+            progress.setImported(progress.getImported() + (aids == null ? 0 : aids.size()));
+        } catch (Exception e) {
+            log.error("批量导入文章失败，本块文章数: {}", chunk.size(), e);
+            progress.setFailed(progress.getFailed() + chunk.size());
+            progress.setError("第" + progress.getLines() + "行及之前的" + chunk.size() + "篇文章写入失败");
+        }
+    }
+
+    private List<Long> insertChunk(List<Article> chunk, Long uid) {
+        if (articleMapper.addNewArticles(chunk) != chunk.size()) {
+            throw new BusinessException(500, "文章保存失败");
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (Article article : chunk) {
+            if (article.getDynamicTags() != null) {
+                names.addAll(Arrays.asList(article.getDynamicTags()));
+            }
+        }
+        List<Long> aids = new ArrayList<>(chunk.size());
+        List<ArticleTag> links = new ArrayList<>();
+        Map<String, Long> tagIds = names.isEmpty() ? Map.of() : tagDictionary.resolve(names);
+        for (Article article : chunk) {
+            aids.add(article.getId());
+            if (article.getDynamicTags() == null) {
+                continue;
+            }
+            Set<Long> tids = new LinkedHashSet<>();
+            for (String name : article.getDynamicTags()) {
+                Long tid = tagIds.get(name);
+                if (tid != null && tids.add(tid)) {
+                    links.add(new ArticleTag(article.getId(), tid, null));
+                }
+            }
+        }
+        if (!links.isEmpty()) {
+            tagMapper.saveArticleTagsBatch(links);
+        }
+        eventPublisher.publishEvent(ArticleChangedEvent.imported(aids, uid));
+        return aids;
+    }
+
+    private void writeExportChunk(List<Article> chunk, ObjectWriter writer, OutputStream out) throws IOException {
+        Map<Long, List<String>> tagNames = new HashMap<>();
+        List<Long> aids = chunk.stream().map(Article::getId).toList();
+        List<ArticleTag> links = tagLookupTemplate.execute(_ -> tagMapper.getTagsByAids(aids));
+        for (ArticleTag link : links == null ? List.<ArticleTag>of() : links) {
+            tagNames.computeIfAbsent(link.getAid(), _ -> new ArrayList<>()).add(link.getTagName());
+        }
+        for (Article article : chunk) {
+            article.setDynamicTags(tagNames.getOrDefault(article.getId(), List.of()).toArray(new String[0]));
+            out.write(writer.writeValueAsBytes(article));
+            out.write('\n');
+        }
+    }
+
+    private static void fail(TransferProgress progress, String error) {
+        progress.setFailed(progress.getFailed() + 1);
+        progress.setError(error);
+    }
+}
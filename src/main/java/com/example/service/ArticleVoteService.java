@@ -0,0 +1,229 @@
+package com.example.service;
+
+import com.example.common.events.ArticleChangedEvent;
+import com.example.common.exceptions.BadRequestException;
+import com.example.common.exceptions.BusinessException;
+import com.example.common.utils.RedisUtil;
+import com.example.common.utils.Util;
+import com.example.entity.ArticleVote;
+import com.example.mapper.ArticleMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 文章赞踩
+ * 每个用户对每篇文章只有一票，投票记录和赞踩数都在Redis中由Lua脚本原子修改，热点文章并发投票时不会重复计数；
+ * 有变化的文章记入VOTE_DIRTY集合，定时批量把赞踩数写回article表，不会每次点击都执行UPDATE。
+ * Redis结构：VOTE_{aid}为哈希，键为用户ID，值为1（赞）或-1（踩）；VOTE_COUNT_{aid}为哈希，保存like和dislike。
+ */
+@Slf4j
+@Service
+public class ArticleVoteService {
+
+    private static final String VOTE_PREFIX = "VOTE_";
+    private static final String VOTE_COUNT_PREFIX = "VOTE_COUNT_";
+    private static final String VOTE_DIRTY = "VOTE_DIRTY";
+    private static final String VOTE_FLUSH_LOCK = "VOTE_FLUSH_LOCK";
+    // 赞踩数尚未从数据库加载
+    private static final long NOT_LOADED = -2;
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    // 重复投同一票视为取消，投另一票视为改投；返回{当前投票, 赞数, 踩数}
+    private static final String VOTE_SCRIPT =
+            "if redis.call('exists', KEYS[2]) == 0 then return {-2} end " +
+            "local old = tonumber(redis.call('hget', KEYS[1], ARGV[1]) or '0') " +
+            "local new = tonumber(ARGV[2]) " +
+            "if new == old then new = 0 end " +
+            "if new ~= old then " +
+            "  if old == 1 then redis.call('hincrby', KEYS[2], 'like', -1) " +
+            "  elseif old == -1 then redis.call('hincrby', KEYS[2], 'dislike', -1) end " +
+            "  if new == 1 then redis.call('hincrby', KEYS[2], 'like', 1) " +
+            "  elseif new == -1 then redis.call('hincrby', KEYS[2], 'dislike', 1) end " +
+            "  if new == 0 then redis.call('hdel', KEYS[1], ARGV[1]) else redis.call('hset', KEYS[1], ARGV[1], new) end " +
+            "  redis.call('sadd', KEYS[3], ARGV[3]) " +
+            "end " +
+            "return {new, tonumber(redis.call('hget', KEYS[2], 'like')), tonumber(redis.call('hget', KEYS[2], 'dislike'))}";
+
+    // 只在赞踩数不存在时用数据库中的值初始化，避免覆盖其他实例已经累加的结果
+    private static final String LOAD_SCRIPT =
+            "if redis.call('exists', KEYS[1]) == 0 then " +
+            "  redis.call('hset', KEYS[1], 'like', ARGV[1], 'dislike', ARGV[2]) " +
+            "end " +
+            "return 1";
+
+    // 读取当前用户的投票和赞踩数
+    private static final String READ_SCRIPT =
+            "if redis.call('exists', KEYS[2]) == 0 then return {-2} end " +
+            "return {tonumber(redis.call('hget', KEYS[1], ARGV[1]) or '0'), " +
+            "tonumber(redis.call('hget', KEYS[2], 'like')), tonumber(redis.call('hget', KEYS[2], 'dislike'))}";
+
+    // 移出脏集合并读取当前赞踩数，之后到达的投票会重新加入脏集合
+    private static final String TAKE_SCRIPT =
+            "redis.call('srem', KEYS[3], ARGV[1]) " +
+            "if redis.call('exists', KEYS[2]) == 0 then return {-2} end " +
+            "return {0, tonumber(redis.call('hget', KEYS[2], 'like')), tonumber(redis.call('hget', KEYS[2], 'dislike'))}";
+
+    private final RedisUtil redisUtil;
+    private final ArticleMapper articleMapper;
+
+    public ArticleVoteService(RedisUtil redisUtil, ArticleMapper articleMapper) {
+        this.redisUtil = redisUtil;
+        this.articleMapper = articleMapper;
+    }
+
+    /**
+     * 投票
+     *
+     * @param value 1为赞，-1为踩，0为取消；与已投的票相同时取消
+     */
+    public ArticleVote vote(Long aid, Integer value) {
+        if (value == null || value < ArticleVote.DISLIKE || value > ArticleVote.LIKE) {
+            throw new BadRequestException(400, "投票只能是1（赞）、-1（踩）或0（取消）");
+        }
+        Long uid = Util.getCurrentUser().getId();
+        List<String> keys = List.of(voteKey(aid), countKey(aid), VOTE_DIRTY);
+        List<?> result = redisUtil.executeScript(VOTE_SCRIPT, List.class, keys, uid, value, aid);
+        if (isNotLoaded(result)) {
+            load(aid);
+            result = redisUtil.executeScript(VOTE_SCRIPT, List.class, keys, uid, value, aid);
+        }
+        return toVote(aid, result);
+    }
+
+    /**
+     * 当前赞踩数及当前用户的投票
+     */
+    public ArticleVote getVote(Long aid) {
+        Long uid = Util.getCurrentUser().getId();
+        List<String> keys = List.of(voteKey(aid), countKey(aid));
+        List<?> result = redisUtil.executeScript(READ_SCRIPT, List.class, keys, uid);
+        if (isNotLoaded(result)) {
+            load(aid);
+            result = redisUtil.executeScript(READ_SCRIPT, List.class, keys, uid);
+        }
+        return toVote(aid, result);
+    }
+
+    // 定时批量写回，多实例部署时同一时刻只有一个实例写回，避免较旧的计数覆盖较新的
+    @Scheduled(fixedDelayString = "${blog.vote.flush-interval:5000}")
+    public void flush() {
+        String requestId = UUID.randomUUID().toString();
+        try {
+            if (!Boolean.TRUE.equals(redisUtil.tryLock(VOTE_FLUSH_LOCK, requestId, 60))) {
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("获取赞踩数写回锁失败", e);
+            return;
+        }
+        try {
+            doFlush();
+        } catch (Exception e) {
+            log.error("写回文章赞踩数失败", e);
+        } finally {
+            redisUtil.releaseLock(VOTE_FLUSH_LOCK, requestId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // 文章彻底删除时一并删除投票
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArticleChanged(ArticleChangedEvent event) {
+        if (event.getType() != ArticleChangedEvent.Type.DELETED) {
+            return;
+        }
+        for (Long aid : event.getAids()) {
+            try {
+                redisUtil.delete(voteKey(aid));
+                redisUtil.delete(countKey(aid));
+                redisUtil.sRemove(VOTE_DIRTY, aid);
+            } catch (Exception e) {
+                log.warn("删除文章投票失败，文章ID: {}", aid, e);
+            }
+        }
+    }
+
+    private void doFlush() {
+        Set<Object> dirty = redisUtil.sMembers(VOTE_DIRTY);
+        if (dirty == null || dirty.isEmpty()) {
+            return;
+        }
+        List<ArticleVote> batch = new ArrayList<>(Math.min(dirty.size(), FLUSH_BATCH_SIZE));
+        for (Object member : dirty) {
+            if (!(member instanceof Number number)) {
+                continue;
+            }
+            long aid = number.longValue();
+            List<?> result = redisUtil.executeScript(TAKE_SCRIPT, List.class,
+                    List.of(voteKey(aid), countKey(aid), VOTE_DIRTY), aid);
+            if (!isNotLoaded(result)) {
+                batch.add(toVote(aid, result));
+            }
+            if (batch.size() == FLUSH_BATCH_SIZE) {
+                write(batch);
+                batch = new ArrayList<>(FLUSH_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<ArticleVote> batch) {
+        try {
+            articleMapper.updateVoteCountsBatch(batch);
+        } catch (Exception e) {
+            // 写入的是绝对值，重新标记后下一轮重试即可
+            log.error("批量写回赞踩数失败，将在下次重试，文章数: {}", batch.size(), e);
+            redisUtil.sAdd(VOTE_DIRTY, batch.stream().map(ArticleVote::getAid).toArray());
+        }
+    }
+
+    private void load(Long aid) {
+        ArticleVote persisted = articleMapper.getVoteCounts(aid);
+        if (persisted == null) {
+            throw new BusinessException(404, "文章不存在");
+        }
+        redisUtil.executeScript(LOAD_SCRIPT, Long.class, List.of(countKey(aid)),
+                nullToZero(persisted.getLikeCount()), nullToZero(persisted.getDislikeCount()));
+    }
+
+    private static boolean isNotLoaded(List<?> result) {
+        return result == null || result.isEmpty() || ((Number) result.getFirst()).longValue() == NOT_LOADED;
+    }
+
+    private static ArticleVote toVote(Long aid, List<?> result) {
+        if (isNotLoaded(result)) {
+            throw new BusinessException(500, "读取文章赞踩数失败");
+        }
+        return new ArticleVote(aid, intAt(result, 0), intAt(result, 1), intAt(result, 2));
+    }
+
+    private static int intAt(List<?> result, int index) {
+        return index < result.size() && result.get(index) instanceof Number number ? number.intValue() : 0;
+    }
+
+    private static int nullToZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private static String voteKey(Long aid) {
+        return VOTE_PREFIX + aid;
+    }
+
+    private static String countKey(Long aid) {
+        return VOTE_COUNT_PREFIX + aid;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.service;
+
+import com.example.common.exceptions.BadRequestException;
+import com.example.entity.PvRollup;
+import com.example.mapper.PvRollupMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 作者浏览统计的内存时序存储
+ * 每个作者一组固定大小的环形缓冲区，按天保存最近max(windows)天、按小时保存最近24小时的浏览量和独立访客数，
+ * 槽位按时间段序号取模复用，同时记录槽位对应的序号，过期的槽位读出为0。
+ * 启动时从pv_rollup_user加载，之后由汇总任务和定时任务刷新最近的时间段，统计接口不访问数据库。
+ */
+@Slf4j
+@Component
+public class AuthorStatsStore {
+
+    private static final int HOURLY_POINTS = 24;
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter HOUR_LABEL = DateTimeFormatter.ofPattern("MM-dd HH:00");
+
+    private final PvRollupMapper rollupMapper;
+    private final int[] windows;
+    private final int dailyPoints;
+    private final Map<Long, Series> series = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public AuthorStatsStore(PvRollupMapper rollupMapper,
+                            @Value("${blog.dashboard.windows:7,30,90}") int[] windows) {
+        this.rollupMapper = rollupMapper;
+        this.windows = windows.clone();
+        Arrays.sort(this.windows);
+        this.dailyPoints = this.windows[this.windows.length - 1];
+    }
+
+    // 一个时间粒度的环形缓冲区，stamps保存槽位对应的时间段序号+1，0表示空槽
+    private static final class Ring {
+        final long[] stamps;
+        final long[] pv;
+        final long[] uv;
+
+        Ring(int capacity) {
+            stamps = new long[capacity];
+            pv = new long[capacity];
+            uv = new long[capacity];
+        }
+
+        void set(long index, long pvValue, long uvValue) {
+            int slot = (int) Math.floorMod(index, (long) stamps.length);
+            // 只接受比槽位中更新的时间段，避免乱序刷新覆盖
+            if (stamps[slot] <= index + 1) {
+                stamps[slot] = index + 1;
+                pv[slot] = pvValue;
+                uv[slot] = uvValue;
+            }
+        }
+
+        int slotOf(long index) {
+            int slot = (int) Math.floorMod(index, (long) stamps.length);
+            return stamps[slot] == index + 1 ? slot : -1;
+        }
+    }
+
+    private final class Series {
+        final Ring daily = new Ring(dailyPoints);
+        final Ring hourly = new Ring(HOURLY_POINTS);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 校验按天统计的窗口
+     */
+    public void checkWindow(int days) {
+        for (int window : windows) {
+            if (window == days) {
+                return;
+            }
+        }
+        throw new BadRequestException(400, "统计天数只能是" + Arrays.toString(windows) + "之一");
+    }
+
+    /**
+     * 作者最近days天或最近24小时的统计，均包含当前时间段，没有浏览的时间段为0
+     *
+     * @return categories为时间段，ds为浏览量，uv为独立访客数
+     */
+    public Map<String, Object> get(Long uid, boolean hourly, int days) {
+        int points = hourly ? HOURLY_POINTS : days;
+        LocalDateTime last = hourly ? LocalDateTime.now().truncatedTo(ChronoUnit.HOURS) : LocalDate.now().atStartOfDay();
+        List<String> categories = new ArrayList<>(points);
+        List<Long> pv = new ArrayList<>(points);
+        List<Long> uv = new ArrayList<>(points);
+        Series s = series.get(uid);
+        for (int i = points - 1; i >= 0; i--) {
+            LocalDateTime bucket = hourly ? last.minusHours(i) : last.minusDays(i);
+            categories.add((hourly ? HOUR_LABEL : DAY_LABEL).format(bucket));
+            long pvValue = 0;
+            long uvValue = 0;
+            if (s != null) {
+                Ring ring = hourly ? s.hourly : s.daily;
+                synchronized (s) {
+                    int slot = ring.slotOf(indexOf(bucket, hourly));
+                    if (slot >= 0) {
+                        pvValue = ring.pv[slot];
+                        uvValue = ring.uv[slot];
+                    }
+                }
+            }
+            pv.add(pvValue);
+            uv.add(uvValue);
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("categories", categories);
+        result.put("ds", pv);
+        result.put("uv", uv);
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        Thread.ofVirtual().name("author-stats-loader").start(() -> {
+            try {
+                long begin = System.currentTimeMillis();
+                load(LocalDate.now().minusDays(dailyPoints - 1L).atStartOfDay(),
+                        LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(HOURLY_POINTS - 1L));
+                ready = true;
+                log.info("作者浏览统计加载完成，作者数: {}，耗时: {}ms", series.size(), System.currentTimeMillis() - begin);
+            } catch (Exception e) {
+                log.error("作者浏览统计加载失败，统计接口将直接查询数据库", e);
+            }
+        });
+    }
+
+    /**
+     * 重新读取最近的时间段：前一天和当天（每日统计会补写前一天的独立访客数），以及上一小时和当前小时
+     */
+    @Scheduled(fixedDelayString = "${blog.dashboard.refresh-interval:30000}")
+    public void refreshRecent() {
+        if (!ready) {
+            return;
+        }
+        try {
+            load(LocalDate.now().minusDays(1).atStartOfDay(),
+                    LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(1));
+        } catch (Exception e) {
+            log.warn("刷新作者浏览统计失败", e);
+        }
+    }
+
+    private void load(LocalDateTime dailyFrom, LocalDateTime hourlyFrom) {
+        put(rollupMapper.getUserRollupsSince(PvRollup.DAY, Timestamp.valueOf(dailyFrom)), false);
+        put(rollupMapper.getUserRollupsSince(PvRollup.HOUR, Timestamp.valueOf(hourlyFrom)), true);
+    }
+
+    private void put(List<PvRollup> rows, boolean hourly) {
+        for (PvRollup row : rows) {
+            Series s = series.computeIfAbsent(row.getId(), _ -> new Series());
+            long index = indexOf(row.getBucket().toLocalDateTime(), hourly);
+            synchronized (s) {
+                (hourly ? s.hourly : s.daily).set(index, nullToZero(row.getPv()), nullToZero(row.getUv()));
+            }
+        }
+    }
+
+    // 时间段序号：按天为epochDay，按小时为本地时间的小时数
+    private static long indexOf(LocalDateTime bucket, boolean hourly) {
+        return hourly ? bucket.toEpochSecond(ZoneOffset.UTC) / 3600 : bucket.toLocalDate().toEpochDay();
+    }
+
+    private static long nullToZero(Long value) {
+        return value == null ? 0 : value;
+    }
+}
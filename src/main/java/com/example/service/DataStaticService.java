@@ -9,15 +9,19 @@ import org.springframework.stereotype.Component;
 @Component
 public class DataStaticService {
     final
-    ArticleService articleService;
+    PvRollupService pvRollupService;
+    final
+    UniqueVisitorService uniqueVisitorService;
 
-    public DataStaticService(ArticleService articleService) {
-        this.articleService = articleService;
+    public DataStaticService(PvRollupService pvRollupService, UniqueVisitorService uniqueVisitorService) {
+        this.pvRollupService = pvRollupService;
+        this.uniqueVisitorService = uniqueVisitorService;
     }
 
-    //每天执行一次，统计PV
+    //每天执行一次；PV已由PvRollupService按小时和按天增量汇总，这里只补充前一天的独立访客数并清理过期的小时汇总
     @Scheduled(cron = "1 0 0 * * ?")
-    public void pvStatisticsPerDay() {
-        articleService.pvStatisticsPerDay();
+    public void statisticsPerDay() {
+        uniqueVisitorService.uvStatisticsPerDay();
+        pvRollupService.pruneHourly();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,375 @@
+package com.example.service;
+
+import com.example.common.exceptions.BadRequestException;
+import com.example.common.exceptions.BusinessException;
+import com.example.service.MediaService.ImageType;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * 缩略图
+ * 按白名单中的宽度在首次请求时生成，保存在 variant-dir/摘要前两位/摘要_w宽度.扩展名，之后直接发送文件。
+ * 读取原图、解码缩放编码和写出都在固定大小的线程池中进行，提交前检查队列容量，队列满时直接拒绝，
+ * 不会在排队前读入原图，避免大量生成请求占满CPU和内存；同一缩略图的并发请求共用一次生成。
+ * 缩略图总大小超过上限时按最近最少使用淘汰，被淘汰的缩略图下次请求时重新生成。
+ * 使用sendfile发送时Tomcat在请求处理结束后才打开文件，因此被淘汰的文件延迟删除。
+ */
+@Slf4j
+@Service
+public class ImageVariantService {
+
+    private static final String TEMP_SUFFIX = ".rendering";
+    private static final float JPEG_QUALITY = 0.85f;
+    private static final int MAX_PASSTHROUGH = 10000;
+
+    private final MediaService mediaService;
+    private final Path root;
+    private final Set<Integer> widths;
+    private final long maxBytes;
+    private final long maxPixels;
+    private final long renderTimeoutSeconds;
+    private final long deleteDelayMillis;
+
+    // 解码缩放占用CPU，线程数固定
+    private final ThreadPoolExecutor renderPool;
+    // 正在生成的缩略图，键为文件名
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inflight = new ConcurrentHashMap<>();
+    // 已确认不需要缩放的缩略图文件名，再次请求时直接发送原图，不再解码文件头
+    private final Set<String> passthrough = ConcurrentHashMap.newKeySet();
+    // 按访问顺序排列的缩略图及其大小，队首最久未使用
+    private final LinkedHashMap<Path, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    // 已淘汰、等待删除的缩略图及淘汰时间
+    private final ConcurrentLinkedQueue<Evicted> evicted = new ConcurrentLinkedQueue<>();
+
+    private record Evicted(Path path, long evictedAt) {
+    }
+
+    public ImageVariantService(MediaService mediaService,
+                               @Value("${blog.media.variant-dir:./data/media-variants}") String dir,
+                               @Value("${blog.media.variant-widths:160,320,640,1280}") int[] widths,
+                               @Value("${blog.media.variant-max-bytes:536870912}") long maxBytes,
+                               @Value("${blog.media.max-pixels:40000000}") long maxPixels,
+                               @Value("${blog.media.render-threads:0}") int renderThreads,
+                               @Value("${blog.media.render-queue:64}") int renderQueue,
+                               @Value("${blog.media.render-timeout-seconds:30}") long renderTimeoutSeconds,
+                               @Value("${blog.media.variant-delete-delay:60000}") long deleteDelayMillis) throws IOException {
+        this.mediaService = mediaService;
+        this.root = Files.createDirectories(Paths.get(dir)).toAbsolutePath().normalize();
+        this.widths = new TreeSet<>();
+        for (int width : widths) {
+            this.widths.add(width);
+        }
+        this.maxBytes = maxBytes;
+        this.maxPixels = maxPixels;
+        this.renderTimeoutSeconds = renderTimeoutSeconds;
+        this.deleteDelayMillis = deleteDelayMillis;
+        int threads = renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+        this.renderPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(renderQueue),
+                Thread.ofPlatform().name("image-variant-render-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        loadEntries();
+    }
+
+    /**
+     * 发送指定宽度的缩略图
+     * 原图不比目标宽度宽，或格式不支持缩放（WEBP）时发送原图
+     */
+    public void send(String name, int width, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!widths.contains(width)) {
+            throw new BadRequestException(400, "图片宽度只能是" + widths + "之一");
+        }
+        Path original = mediaService.resolve(name);
+        if (original == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        int dot = name.lastIndexOf('.');
+        String hash = name.substring(0, dot);
+        ImageType type = ImageType.ofExtension(name.substring(dot + 1));
+        Path variant = type == ImageType.WEBP ? null : get(original, hash, type, width);
+        if (variant == null) {
+            mediaService.send(original, hash, type, request, response);
+        } else {
+            mediaService.send(variant, hash + "_w" + width, outputType(type), request, response);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdown();
+    }
+
+    // 删除淘汰超过延迟时间的缩略图，淘汰后又被请求而重新登记的不删除
+    @Scheduled(fixedDelayString = "${blog.media.variant-delete-delay:60000}")
+    public void purgeEvicted() {
+        long deadline = System.currentTimeMillis() - deleteDelayMillis;
+        Evicted head;
+        while ((head = evicted.peek()) != null && head.evictedAt() <= deadline) {
+            evicted.poll();
+            synchronized (this) {
+                if (entries.containsKey(head.path())) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(head.path());
+                } catch (IOException e) {
+                    log.warn("删除缩略图失败: {}", head.path(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 取得缩略图，不存在时生成
+     *
+     * @return 缩略图文件，不需要缩放时返回null
+     */
+    private Path get(Path original, String hash, ImageType type, int width) {
+        String fileName = hash + "_w" + width + "." + outputType(type).getExtension();
+        Path target = root.resolve(hash.substring(0, 2)).resolve(fileName);
+        if (Files.isRegularFile(target)) {
+            touch(target);
+            return target;
+        }
+        if (passthrough.contains(fileName)) {
+            return null;
+        }
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> flight = inflight.putIfAbsent(fileName, created);
+        if (flight == null) {
+            flight = created;
+            // 排队超过等待时间的任务不再执行，等待的请求都已超时返回
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(renderTimeoutSeconds);
+            try {
+                renderPool.execute(() -> {
+                    try {
+                        if (System.nanoTime() - deadline > 0) {
+                            throw new BusinessException(503, "图片处理繁忙，请稍后重试");
+                        }
+                        Path rendered = render(original, target, type, width);
+                        if (rendered == null) {
+                            if (passthrough.size() >= MAX_PASSTHROUGH) {
+                                passthrough.clear();
+                            }
+                            passthrough.add(fileName);
+                        }
+                        created.complete(rendered);
+                    } catch (Throwable e) {
+                        created.completeExceptionally(e);
+                    } finally {
+                        inflight.remove(fileName, created);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inflight.remove(fileName, created);
+                BusinessException busy = new BusinessException(503, "图片处理繁忙，请稍后重试");
+                created.completeExceptionally(busy);
+                throw busy;
+            }
+        }
+        try {
+            return flight.get(renderTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new BusinessException(503, "图片处理繁忙，请稍后重试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(503, "图片处理被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusinessException be) {
+                throw be;
+            }
+            log.error("生成缩略图失败: {}", fileName, e.getCause());
+            throw new BusinessException(500, "图片处理失败");
+        }
+    }
+
+    // 在计算线程池中执行，直接从原图文件解码，不把整个文件读入内存
+    private Path render(Path original, Path target, ImageType type, int width) throws IOException {
+        if (Files.isRegularFile(target)) {
+            touch(target);
+            return target;
+        }
+        byte[] encoded = scale(original, type, width);
+        if (encoded == null) {
+            return null;
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "variant-", TEMP_SUFFIX);
+        try {
+            Files.write(temp, encoded);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        add(target, encoded.length);
+        return target;
+    }
+
+    /**
+     * 解码并缩放到指定宽度，保持宽高比
+     *
+     * @return 编码后的内容，原图不比目标宽度宽或像素过多时返回null
+     */
+    private byte[] scale(Path original, ImageType type, int width) throws IOException {
+        BufferedImage source;
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                // 解码前先检查尺寸，避免解压炸弹占满内存
+                long w = reader.getWidth(0);
+                long h = reader.getHeight(0);
+                if (w <= width || w * h > maxPixels) {
+                    return null;
+                }
+                source = reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+        int height = (int) Math.max(1, Math.round((double) source.getHeight() * width / source.getWidth()));
+        ImageType output = outputType(type);
+        BufferedImage scaled = resize(source, width, height, output == ImageType.PNG);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (output == ImageType.JPEG) {
+            writeJpeg(scaled, out);
+        } else {
+            ImageIO.write(scaled, "png", out);
+        }
+        return out.toByteArray();
+    }
+
+    // 每次最多缩小一半，逐步缩放到目标尺寸，比一次双线性插值清晰
+    private static BufferedImage resize(BufferedImage source, int width, int height, boolean alpha) {
+        int imageType = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            BufferedImage next = new BufferedImage(w, h, imageType);
+            Graphics2D g = next.createGraphics();
+            try {
+                if (!alpha) {
+                    // JPEG没有透明通道，透明部分按白色处理
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, w, h);
+                }
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, ByteArrayOutputStream out) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // JPEG缩略图仍为JPEG，PNG和GIF（取第一帧）输出PNG
+    private static ImageType outputType(ImageType type) {
+        return type == ImageType.JPEG ? ImageType.JPEG : ImageType.PNG;
+    }
+
+    private synchronized void touch(Path path) {
+        if (entries.get(path) == null) {
+            try {
+                put(path, Files.size(path));
+            } catch (IOException e) {
+                // 文件刚被淘汰，下次请求重新生成
+            }
+        }
+    }
+
+    private synchronized void add(Path path, long size) {
+        put(path, size);
+        evict();
+    }
+
+    private void put(Path path, long size) {
+        Long previous = entries.put(path, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+    }
+
+    // 只移出索引，文件由purgeEvicted延迟删除：sendfile在请求处理结束后才按文件名打开文件，立即删除会导致发送失败
+    private void evict() {
+        Iterator<Map.Entry<Path, Long>> iterator = entries.entrySet().iterator();
+        long now = System.currentTimeMillis();
+        while (totalBytes > maxBytes && entries.size() > 1 && iterator.hasNext()) {
+            Map.Entry<Path, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            evicted.add(new Evicted(eldest.getKey(), now));
+        }
+    }
+
+    // 按修改时间恢复访问顺序，并清理上次异常退出时残留的临时文件
+    private void loadEntries() throws IOException {
+        record Found(Path path, long size, long modified) {
+        }
+        List<Found> found = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                if (path.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                found.add(new Found(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+            }
+        }
+        found.sort(Comparator.comparingLong(Found::modified));
+        synchronized (this) {
+            found.forEach(f -> put(f.path(), f.size()));
+            evict();
+        }
+        log.info("缩略图缓存加载完成，数量: {}，大小: {}KB", entries.size(), totalBytes / 1024);
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.service;
+
+import com.example.common.exceptions.BadRequestException;
+import com.example.common.exceptions.BusinessException;
+import com.example.common.utils.FileResponseUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片存储
+ * 上传内容经NIO通道以固定大小的缓冲区边读边写入临时文件，同时计算SHA-256，
+ * 写完后按内容摘要原子移动到 dir/摘要前两位/摘要3-4位/摘要.扩展名，相同内容只保存一份。
+ * 每个上传只占用一个缓冲区，并发上传数受信号量限制，内存占用与图片大小无关。
+ * 读取时以内容摘要作为强ETag，文件内容永不改变，可以长期缓存；正文经sendfile或transferTo零拷贝发送，支持单区间Range请求。
+ */
+@Slf4j
+@Service
+public class MediaService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_SUFFIX = ".uploading";
+    // 识别图片类型需要的文件头长度
+    private static final int HEADER_SIZE = 12;
+    private static final String IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable().getHeaderValue();
+
+    private final Path root;
+    private final String urlPrefix;
+    private final long maxBytes;
+    private final Semaphore uploadPermits;
+
+    public MediaService(@Value("${blog.media.dir:./data/media}") String dir,
+                        @Value("${blog.media.url-prefix:/media/}") String urlPrefix,
+                        @Value("${blog.media.max-bytes:20971520}") long maxBytes,
+                        @Value("${blog.media.max-concurrent-uploads:16}") int maxConcurrentUploads) throws IOException {
+        this.root = Files.createDirectories(Paths.get(dir)).toAbsolutePath().normalize();
+        this.urlPrefix = urlPrefix;
+        this.maxBytes = maxBytes;
+        this.uploadPermits = new Semaphore(maxConcurrentUploads);
+        // 清理上次异常退出时残留的临时文件
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(root, "*" + TEMP_SUFFIX)) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    /**
+     * 支持的图片类型，按文件头识别，不信任客户端提供的文件名和Content-Type
+     */
+    public enum ImageType {
+        PNG("png", "image/png"),
+        JPEG("jpg", "image/jpeg"),
+        GIF("gif", "image/gif"),
+        WEBP("webp", "image/webp");
+
+        private final String extension;
+        private final String contentType;
+
+        ImageType(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static ImageType ofExtension(String extension) {
+            for (ImageType type : values()) {
+                if (type.extension.equals(extension)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        static ImageType sniff(ByteBuffer head) {
+            if (startsWith(head, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+                return PNG;
+            }
+            if (startsWith(head, 0, 0xFF, 0xD8, 0xFF)) {
+                return JPEG;
+            }
+            if (startsWith(head, 0, 'G', 'I', 'F', '8')) {
+                return GIF;
+            }
+            if (startsWith(head, 0, 'R', 'I', 'F', 'F') && startsWith(head, 8, 'W', 'E', 'B', 'P')) {
+                return WEBP;
+            }
+            return null;
+        }
+
+        private static boolean startsWith(ByteBuffer head, int offset, int... magic) {
+            if (head.limit() < offset + magic.length) {
+                return false;
+            }
+            for (int i = 0; i < magic.length; i++) {
+                if ((head.get(offset + i) & 0xff) != magic[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 保存结果
+     *
+     * @param url     稳定的访问地址，相同内容始终相同
+     * @param created 是否新写入，false表示已存在相同内容
+     */
+    public record StoredImage(String hash, ImageType type, long size, String url, boolean created) {
+    }
+
+    /**
+     * 流式保存上传的图片
+     *
+     * @param declaredSize 客户端声明的大小，未知时传-1；实际写入时仍按读取的字节数限制
+     */
+    public StoredImage store(InputStream in, long declaredSize) throws IOException {
+        if (declaredSize > maxBytes) {
+            throw new BadRequestException(400, "图片不能超过" + maxBytes / 1024 / 1024 + "MB");
+        }
+        if (!acquire()) {
+            throw new BusinessException(503, "上传人数过多，请稍后重试");
+        }
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(root, "upload-", TEMP_SUFFIX);
+            MessageDigest digest = sha256();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            ImageType type;
+            long size = 0;
+            try (ReadableByteChannel source = Channels.newChannel(in);
+                 FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                // 先读满文件头再识别类型
+                boolean eof = false;
+                while (buffer.position() < HEADER_SIZE && !eof) {
+                    eof = source.read(buffer) == -1;
+                }
+                buffer.flip();
+                type = ImageType.sniff(buffer);
+                if (type == null) {
+                    throw new BadRequestException(400, "只支持PNG、JPEG、GIF和WEBP格式的图片");
+                }
+                while (true) {
+                    size += buffer.remaining();
+                    if (size > maxBytes) {
+                        throw new BadRequestException(400, "图片不能超过" + maxBytes / 1024 / 1024 + "MB");
+                    }
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                    if (eof) {
+                        break;
+                    }
+                    eof = source.read(buffer) == -1;
+                    buffer.flip();
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path path = pathOf(hash, type);
+            boolean created = false;
+            if (!Files.exists(path)) {
+                Files.createDirectories(path.getParent());
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+                    created = true;
+                } catch (FileAlreadyExistsException e) {
+                    // 相同内容被并发上传，已有一份即可
+                }
+            }
+            return new StoredImage(hash, type, size, urlPrefix + hash + "." + type.getExtension(), created);
+        } finally {
+            // 创建或删除临时文件失败时也要归还许可，否则许可泄漏后所有上传都会返回503
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } finally {
+                uploadPermits.release();
+            }
+        }
+    }
+
+    /**
+     * 按访问地址中的文件名查找图片
+     *
+     * @param name 摘要.扩展名
+     * @return 文件不存在或名称不合法时返回null
+     */
+    public Path resolve(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot != 64) {
+            return null;
+        }
+        String hash = name.substring(0, dot);
+        ImageType type = ImageType.ofExtension(name.substring(dot + 1));
+        if (type == null || !hash.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+            return null;
+        }
+        Path path = pathOf(hash, type);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    /**
+     * 发送原图
+     */
+    public void send(String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path path = resolve(name);
+        if (path == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        int dot = name.lastIndexOf('.');
+        send(path, name.substring(0, dot), ImageType.ofExtension(name.substring(dot + 1)), request, response);
+    }
+
+    /**
+     * 发送内容不变的图片文件，支持If-None-Match和单区间Range/If-Range，多区间请求按完整内容返回
+     *
+     * @param tag 唯一对应文件内容的标识，用作强ETag
+     */
+    public void send(Path path, String tag, ImageType type, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String etag = "\"" + tag + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentType(type.getContentType());
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        long length = Files.size(path);
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] parsed = parseRange(range, length);
+            if (parsed == null) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            if (parsed.length == 2) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        if ("HEAD".equals(request.getMethod())) {
+            response.setContentLengthLong(end - start + 1);
+            return;
+        }
+        FileResponseUtil.sendFile(request, response, path, start, end - start + 1);
+    }
+
+    // If-None-Match可能是多个ETag或*
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析Range头
+     *
+     * @return 单区间时为{起始, 结束}（含）；格式无法识别或多区间时为空数组，按完整内容返回；区间不可满足时为null
+     */
+    private static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // bytes=-n 表示最后n个字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                if (start >= length || start > end) {
+                    return null;
+                }
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private Path pathOf(String hash, ImageType type) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash + "." + type.getExtension());
+    }
+
+    // 等待一小段时间，仍然没有空位时拒绝，避免请求线程长时间堆积
+    private boolean acquire() {
+        try {
+            return uploadPermits.tryAcquire(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.service;
+
+import com.example.common.utils.RedisUtil;
+import com.example.mapper.ArticleMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 文章浏览量计数器（write-behind）
+ * 阅读文章时只在内存中累加，由定时任务批量写回article.pageView，
+ * 避免每次阅读都在事务中对文章行执行UPDATE而产生行锁竞争。
+ * 开启redis-mirror后，未落库的增量同时累加到Redis，多实例部署时各节点读到的浏览量一致。
+ * 每批写回成功后发布给PvRollupService，按小时和按天汇总。
+ */
+@Slf4j
+@Service
+public class PageViewCounterService {
+
+    private static final String PV_PENDING_PREFIX = "PV_PENDING_";
+    // 单条UPDATE语句中最多合并的文章数
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    private final ArticleMapper articleMapper;
+    private final RedisUtil redisUtil;
+    private final PvRollupService pvRollupService;
+    private final ArticleDetailCache articleDetailCache;
+    private final boolean redisMirror;
+
+    // LongAdder内部按线程分段计数，热点文章并发阅读时不会争抢同一个计数器
+    private final ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public PageViewCounterService(ArticleMapper articleMapper,
+                                  RedisUtil redisUtil,
+                                  PvRollupService pvRollupService,
+                                  ArticleDetailCache articleDetailCache,
+                                  @Value("${blog.pv.redis-mirror:false}") boolean redisMirror) {
+        this.articleMapper = articleMapper;
+        this.redisUtil = redisUtil;
+        this.pvRollupService = pvRollupService;
+        this.articleDetailCache = articleDetailCache;
+        this.redisMirror = redisMirror;
+    }
+
+    /**
+     * 记录一次阅读
+     */
+    public void record(Long aid) {
+        pending.computeIfAbsent(aid, _ -> new LongAdder()).increment();
+        if (redisMirror) {
+            try {
+                redisUtil.increment(PV_PENDING_PREFIX + aid, 1);
+            } catch (Exception e) {
+                log.warn("浏览量同步到Redis失败，文章ID: {}", aid, e);
+            }
+        }
+    }
+
+    /**
+     * 获取尚未写回数据库的浏览量
+     */
+    public long getPending(Long aid) {
+        if (redisMirror) {
+            try {
+                String value = redisUtil.getString(PV_PENDING_PREFIX + aid);
+                if (value != null) {
+                    return Math.max(0, Long.parseLong(value));
+                }
+            } catch (Exception e) {
+                log.warn("从Redis读取未落库浏览量失败，文章ID: {}", aid, e);
+            }
+        }
+        LongAdder adder = pending.get(aid);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * 合并数据库中的浏览量和未落库的浏览量
+     */
+    public int mergePageView(Long aid, Integer persisted) {
+        long total = (persisted == null ? 0 : persisted) + getPending(aid);
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    // 定时批量写回，上一轮尚未结束时直接跳过
+    @Scheduled(fixedDelayString = "${blog.pv.flush-interval:5000}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 等待进行中的写回结束后再完整写回一次，用于应用关闭时
+     */
+    public void flushAll() {
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // 应用关闭时写回剩余浏览量，保证不丢计数
+    @PreDestroy
+    public void shutdown() {
+        flushAll();
+    }
+
+    private void doFlush() {
+        Map<Long, Long> deltas = new HashMap<>();
+        // sumThenReset逐段取走计数，期间的并发累加要么被本轮取走，要么留到下一轮
+        pending.forEach((aid, adder) -> {
+            long count = adder.sumThenReset();
+            if (count > 0) {
+                deltas.put(aid, count);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        for (Map<Long, Long> batch : partition(deltas)) {
+            try {
+                articleMapper.pvIncrementBatch(batch);
+            } catch (Exception e) {
+                // 写回失败时把增量还回计数器，下一轮重试
+                log.error("批量写回浏览量失败，将在下次重试，文章数: {}", batch.size(), e);
+                batch.forEach((aid, count) -> pending.computeIfAbsent(aid, _ -> new LongAdder()).add(count));
+                continue;
+            }
+            // 详情缓存中的浏览量是加载时的值，计数已清零，需重新从数据库加载
+            articleDetailCache.evictAll(batch.keySet());
+            try {
+                pvRollupService.publish(batch);
+            } catch (Exception e) {
+                // 文章总浏览量已写回，只影响汇总统计
+                log.warn("发布浏览事件失败，该批浏览量不计入汇总，文章数: {}", batch.size(), e);
+            }
+            if (redisMirror) {
+                batch.forEach(this::releaseMirror);
+            }
+        }
+    }
+
+    private void releaseMirror(Long aid, Long count) {
+        try {
+            redisUtil.increment(PV_PENDING_PREFIX + aid, -count);
+        } catch (Exception e) {
+            log.warn("扣减Redis中未落库浏览量失败，文章ID: {}", aid, e);
+        }
+    }
+
+    private List<Map<Long, Long>> partition(Map<Long, Long> deltas) {
+        List<Map<Long, Long>> batches = new ArrayList<>();
+        Map<Long, Long> batch = new LinkedHashMap<>();
+        for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+            if (batch.size() == FLUSH_BATCH_SIZE) {
+                batches.add(batch);
+                batch = new LinkedHashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+}
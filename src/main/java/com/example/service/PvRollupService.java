@@ -0,0 +1,345 @@
+package com.example.service;
+
+import com.example.common.events.ArticleChangedEvent;
+import com.example.common.exceptions.BadRequestException;
+import com.example.common.utils.RedisUtil;
+import com.example.entity.Article;
+import com.example.entity.PvRollup;
+import com.example.mapper.ArticleMapper;
+import com.example.mapper.PvRollupMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * 浏览量增量汇总
+ * PageViewCounterService每次批量写回浏览量后，把这批增量作为一条浏览事件追加到Redis Stream；
+ * 汇总任务从水位之后读取事件，按小时和按天累加到文章和作者两张汇总表，
+ * 汇总结果和新水位在同一个事务中提交，水位以读取时的值为条件更新，任务中断、重复执行，
+ * 或汇总锁过期后另一实例读到同一水位，都不会重复计数。已汇总的事件按水位从Stream中删除。
+ */
+@Slf4j
+@Service
+public class PvRollupService {
+
+    private static final String PV_EVENTS = "PV_EVENTS";
+    private static final String PV_ROLLUP_LOCK = "PV_ROLLUP_LOCK";
+    private static final String WATERMARK = "pv";
+    private static final String STREAM_START = "0-0";
+    private static final String FIELD_TIME = "ts";
+    private static final String FIELD_DELTAS = "deltas";
+    private static final int WRITE_BATCH_SIZE = 500;
+    // 单次任务最多处理的批数，避免积压时长时间占用锁
+    private static final int MAX_BATCHES_PER_RUN = 20;
+
+    public enum Granularity {
+        HOUR("hour", PvRollup.HOUR, 24, ChronoUnit.HOURS, DateTimeFormatter.ofPattern("MM-dd HH:00")),
+        DAY("day", PvRollup.DAY, 7, ChronoUnit.DAYS, DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+
+        private final String label;
+        private final int code;
+        // 文章统计展示的时间段数
+        private final int buckets;
+        private final ChronoUnit unit;
+        private final DateTimeFormatter formatter;
+
+        Granularity(String label, int code, int buckets, ChronoUnit unit, DateTimeFormatter formatter) {
+            this.label = label;
+            this.code = code;
+            this.buckets = buckets;
+            this.unit = unit;
+            this.formatter = formatter;
+        }
+
+        public static Granularity of(String label) {
+            for (Granularity granularity : values()) {
+                if (granularity.label.equals(label)) {
+                    return granularity;
+                }
+            }
+            throw new BadRequestException(400, "不支持的统计粒度: " + label);
+        }
+
+        LocalDateTime truncate(LocalDateTime time) {
+            return time.truncatedTo(unit);
+        }
+    }
+
+    private record BucketKey(Long id, int granularity, LocalDateTime bucket) {
+    }
+
+    private final RedisUtil redisUtil;
+    private final PvRollupMapper rollupMapper;
+    private final ArticleMapper articleMapper;
+    private final UniqueVisitorService uniqueVisitorService;
+    private final AuthorStatsStore authorStatsStore;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int hourlyRetentionDays;
+
+    public PvRollupService(RedisUtil redisUtil,
+                           PvRollupMapper rollupMapper,
+                           ArticleMapper articleMapper,
+                           UniqueVisitorService uniqueVisitorService,
+                           AuthorStatsStore authorStatsStore,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${blog.rollup.batch-size:1000}") int batchSize,
+                           @Value("${blog.rollup.hourly-retention-days:7}") int hourlyRetentionDays) {
+        this.redisUtil = redisUtil;
+        this.rollupMapper = rollupMapper;
+        this.articleMapper = articleMapper;
+        this.uniqueVisitorService = uniqueVisitorService;
+        this.authorStatsStore = authorStatsStore;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.hourlyRetentionDays = Math.max(1, hourlyRetentionDays);
+    }
+
+    /**
+     * 发布一批已写回数据库的浏览量增量
+     */
+    public void publish(Map<Long, Long> deltas) {
+        StringBuilder encoded = new StringBuilder(deltas.size() * 12);
+        deltas.forEach((aid, count) -> {
+            if (!encoded.isEmpty()) {
+                encoded.append(',');
+            }
+            encoded.append(aid).append(':').append(count);
+        });
+        redisUtil.xAdd(PV_EVENTS, Map.<String, Object>of(FIELD_TIME, System.currentTimeMillis(), FIELD_DELTAS, encoded.toString()));
+    }
+
+    // 多实例部署时同一时刻只有一个实例汇总
+    @Scheduled(fixedDelayString = "${blog.rollup.interval:10000}")
+    public void rollup() {
+        String requestId = UUID.randomUUID().toString();
+        try {
+            if (!Boolean.TRUE.equals(redisUtil.tryLock(PV_ROLLUP_LOCK, requestId, 60))) {
+                log.info("浏览量汇总锁被占用，跳过本次汇总");
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("获取浏览量汇总锁失败", e);
+            return;
+        }
+        try {
+            int total = 0;
+            for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+                int processed = rollupOnce();
+                total += processed;
+                if (processed < batchSize) {
+                    break;
+                }
+            }
+            trim();
+            if (total > 0) {
+                // 本实例立即刷新内存中的作者统计，其他实例由各自的定时刷新跟上
+                authorStatsStore.refreshRecent();
+            }
+        } catch (Exception e) {
+            log.error("汇总浏览量失败，将在下次重试", e);
+        } finally {
+            redisUtil.releaseLock(PV_ROLLUP_LOCK, requestId);
+        }
+    }
+
+    /**
+     * 删除超过保留天数的小时汇总，按天的汇总一直保留
+     */
+    public void pruneHourly() {
+        Timestamp before = Timestamp.valueOf(LocalDate.now().minusDays(hourlyRetentionDays).atStartOfDay());
+        rollupMapper.deleteArticleHourlyBefore(before);
+        rollupMapper.deleteUserHourlyBefore(before);
+    }
+
+    /**
+     * 作者最近的浏览量，按小时为最近24小时，按天为最近days天，均包含当前时间段
+     * 内存中的作者统计加载完成后不访问数据库
+     *
+     * @return categories为时间段，ds为浏览量，uv为独立访客数
+     */
+    public Map<String, Object> getUserStatistics(Long uid, String granularity, int days) {
+        Granularity g = Granularity.of(granularity);
+        if (g == Granularity.DAY) {
+            authorStatsStore.checkWindow(days);
+        }
+        Map<String, Object> result;
+        if (authorStatsStore.isReady()) {
+            result = authorStatsStore.get(uid, g == Granularity.HOUR, days);
+        } else {
+            int points = g == Granularity.DAY ? days : g.buckets;
+            LocalDateTime from = firstBucket(g, points);
+            result = toSeries(g, from, points, rollupMapper.getUserRollups(uid, g.code, Timestamp.valueOf(from)));
+        }
+        if (g == Granularity.DAY) {
+            // 当天的独立访客数直接从HyperLogLog读取，前一天及以前的由每日统计写入
+            @SuppressWarnings("unchecked")
+            List<Long> uv = (List<Long>) result.get("uv");
+            uv.set(uv.size() - 1, uniqueVisitorService.countAuthorVisitors(uid, LocalDate.now()));
+        }
+        return result;
+    }
+
+    /**
+     * 文章最近的浏览量，按小时为最近24小时，按天为最近7天
+     */
+    public Map<String, Object> getArticleStatistics(Long aid, String granularity) {
+        Granularity g = Granularity.of(granularity);
+        LocalDateTime from = firstBucket(g, g.buckets);
+        Map<String, Object> result = toSeries(g, from, g.buckets, rollupMapper.getArticleRollups(aid, g.code, Timestamp.valueOf(from)));
+        result.remove("uv");
+        return result;
+    }
+
+    // 文章彻底删除时一并删除文章的汇总，作者的汇总保留
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArticleChanged(ArticleChangedEvent event) {
+        if (event.getType() != ArticleChangedEvent.Type.DELETED) {
+            return;
+        }
+        for (Long aid : event.getAids()) {
+            try {
+                rollupMapper.deleteArticleRollups(aid);
+            } catch (Exception e) {
+                log.warn("删除文章浏览量汇总失败，文章ID: {}", aid, e);
+            }
+        }
+    }
+
+    // 只删除水位之前（已汇总）的事件，尚未汇总的事件不会因Stream过长被丢弃
+    private void trim() {
+        String watermark = rollupMapper.getWatermark(WATERMARK);
+        if (watermark != null) {
+            redisUtil.xTrimMinId(PV_EVENTS, watermark);
+        }
+    }
+
+    // 读取水位之后的一批事件并汇总，返回读取的事件数；水位已被其他实例推进时返回0
+    private int rollupOnce() {
+        String watermark = rollupMapper.getWatermark(WATERMARK);
+        List<MapRecord<String, Object, Object>> records =
+                redisUtil.xReadAfter(PV_EVENTS, watermark == null ? STREAM_START : watermark, batchSize);
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+        Map<BucketKey, Long> byArticle = new HashMap<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            Object time = record.getValue().get(FIELD_TIME);
+            Object deltas = record.getValue().get(FIELD_DELTAS);
+            if (!(time instanceof Number millis) || !(deltas instanceof String encoded)) {
+                log.warn("忽略格式错误的浏览事件: {}", record.getId());
+                continue;
+            }
+            LocalDateTime at = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis.longValue()), ZoneId.systemDefault());
+            for (String pair : encoded.split(",")) {
+                int colon = pair.indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                Long aid = Long.valueOf(pair.substring(0, colon));
+                long count = Long.parseLong(pair.substring(colon + 1));
+                for (Granularity g : Granularity.values()) {
+                    byArticle.merge(new BucketKey(aid, g.code, g.truncate(at)), count, Long::sum);
+                }
+            }
+        }
+        Map<Long, Long> owners = loadOwners(byArticle.keySet());
+        Map<BucketKey, Long> byUser = new HashMap<>();
+        byArticle.forEach((key, count) -> {
+            Long uid = owners.get(key.id());
+            if (uid != null) {
+                byUser.merge(new BucketKey(uid, key.granularity(), key.bucket()), count, Long::sum);
+            }
+        });
+        String lastId = records.getLast().getId().getValue();
+        Boolean advanced = transactionTemplate.execute(_ -> {
+            // 先推进水位：更新时锁住水位行，并发的汇总在此等待，之后因水位不匹配而放弃
+            int updated = watermark == null
+                    ? rollupMapper.insertWatermark(WATERMARK, lastId)
+                    : rollupMapper.advanceWatermark(WATERMARK, watermark, lastId);
+            if (updated == 0) {
+                return false;
+            }
+            for (List<PvRollup> batch : toRollups(byArticle)) {
+                rollupMapper.addArticleRollups(batch);
+            }
+            for (List<PvRollup> batch : toRollups(byUser)) {
+                rollupMapper.addUserRollups(batch);
+            }
+            return true;
+        });
+        if (!Boolean.TRUE.equals(advanced)) {
+            log.warn("浏览量汇总水位已被其他实例推进，放弃本批，水位: {}", watermark);
+            return 0;
+        }
+        return records.size();
+    }
+
+    private Map<Long, Long> loadOwners(Set<BucketKey> keys) {
+        List<Long> aids = keys.stream().map(BucketKey::id).distinct().toList();
+        Map<Long, Long> owners = new HashMap<>();
+        for (int i = 0; i < aids.size(); i += WRITE_BATCH_SIZE) {
+            for (Article article : articleMapper.getArticleOwners(aids.subList(i, Math.min(i + WRITE_BATCH_SIZE, aids.size())))) {
+                owners.put(article.getId(), article.getUid());
+            }
+        }
+        return owners;
+    }
+
+    private static List<List<PvRollup>> toRollups(Map<BucketKey, Long> counts) {
+        List<List<PvRollup>> batches = new ArrayList<>();
+        List<PvRollup> batch = new ArrayList<>();
+        for (Map.Entry<BucketKey, Long> entry : counts.entrySet()) {
+            BucketKey key = entry.getKey();
+            batch.add(new PvRollup(key.id(), key.granularity(), Timestamp.valueOf(key.bucket()), entry.getValue(), 0L));
+            if (batch.size() == WRITE_BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private static LocalDateTime firstBucket(Granularity g, int points) {
+        return g.truncate(LocalDateTime.now()).minus(points - 1L, g.unit);
+    }
+
+    // 没有浏览的时间段补0
+    private static Map<String, Object> toSeries(Granularity g, LocalDateTime from, int points, List<PvRollup> rows) {
+        Map<LocalDateTime, PvRollup> byBucket = new HashMap<>();
+        for (PvRollup row : rows) {
+            byBucket.put(row.getBucket().toLocalDateTime(), row);
+        }
+        List<String> categories = new ArrayList<>(points);
+        List<Long> pv = new ArrayList<>(points);
+        List<Long> uv = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            LocalDateTime bucket = from.plus(i, g.unit);
+            PvRollup row = byBucket.get(bucket);
+            categories.add(g.formatter.format(bucket));
+            pv.add(row == null || row.getPv() == null ? 0L : row.getPv());
+            uv.add(row == null || row.getUv() == null ? 0L : row.getUv());
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("categories", categories);
+        result.put("ds", pv);
+        result.put("uv", uv);
+        return result;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.service;
+
+import com.example.entity.Tag;
+import com.example.mapper.TagMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 标签名与标签ID的进程内字典
+ * 标签只会新增，不会改名或删除，名称与ID的对应关系一经写入数据库就不再变化，
+ * 因此各实例缓存的映射不会过期，未命中时查询数据库即可保证集群内一致。
+ * 在事务中解析出的映射等事务提交后才缓存，避免缓存回滚后不存在的ID。
+ */
+@Component
+public class TagDictionary {
+
+    private final TagMapper tagMapper;
+    private final ConcurrentHashMap<String, Long> nameToId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, String> idToName = new ConcurrentHashMap<>();
+
+    public TagDictionary(TagMapper tagMapper) {
+        this.tagMapper = tagMapper;
+    }
+
+    /**
+     * 把标签名解析为ID，不存在的标签先批量插入
+     *
+     * @return 标签名到ID的映射，保持传入顺序
+     */
+    public Map<String, Long> resolve(Collection<String> names) {
+        Map<String, Long> resolved = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            Long id = nameToId.get(name);
+            if (id != null) {
+                resolved.put(name, id);
+            } else {
+                missing.add(name);
+            }
+        }
+        if (!missing.isEmpty()) {
+            tagMapper.saveTags(missing.toArray(new String[0]));
+            List<Tag> tags = tagMapper.getTagsByTagName(missing);
+            Map<String, Tag> found = new LinkedHashMap<>();
+            for (String name : missing) {
+                Tag tag = match(tags, name);
+                if (tag != null) {
+                    found.put(name, tag);
+                    resolved.put(name, tag.getId());
+                }
+            }
+            rememberAfterCommit(found);
+        }
+        return resolved;
+    }
+
+    /**
+     * 把标签ID转换为标签对象，保持传入顺序
+     */
+    public List<Tag> toTags(Collection<Long> ids) {
+        List<Long> missing = ids.stream().filter(id -> !idToName.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            for (Tag tag : tagMapper.getTagsByIds(missing)) {
+                remember(tag.getTagName(), tag);
+            }
+        }
+        List<Tag> tags = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            String name = idToName.get(id);
+            if (name != null) {
+                tags.add(new Tag(id, name));
+            }
+        }
+        return tags;
+    }
+
+    public String nameOf(Long id) {
+        String name = idToName.get(id);
+        if (name == null) {
+            List<Tag> tags = toTags(List.of(id));
+            name = tags.isEmpty() ? null : tags.getFirst().getTagName();
+        }
+        return name;
+    }
+
+    // 新插入的标签随调用方的事务提交，回滚后ID不存在，因此提交后才写入字典
+    private void rememberAfterCommit(Map<String, Tag> found) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            found.forEach(this::remember);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                found.forEach(TagDictionary.this::remember);
+            }
+        });
+    }
+
+    private void remember(String name, Tag tag) {
+        nameToId.put(name, tag.getId());
+        nameToId.put(tag.getTagName(), tag.getId());
+        idToName.put(tag.getId(), tag.getTagName());
+    }
+
+    // 数据库按排序规则比较标签名（默认忽略大小写），与请求中的写法可能不同
+    private static Tag match(List<Tag> tags, String name) {
+        Tag ignoreCase = null;
+        for (Tag tag : tags) {
+            if (tag.getTagName().equals(name)) {
+                return tag;
+            }
+            if (ignoreCase == null && tag.getTagName().equalsIgnoreCase(name)) {
+                ignoreCase = tag;
+            }
+        }
+        return ignoreCase;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.service;
+
+import com.example.common.exceptions.BadRequestException;
+import com.example.common.utils.RedisUtil;
+import com.example.entity.Article;
+import com.example.mapper.ArticleMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 热门文章排行
+ * 每次阅读的贡献随时间指数衰减：t时刻的一次阅读在now时刻的分数为exp(-(now - t) / τ)，τ取各时间窗口的长度。
+ * 为避免每次都衰减全部分数，采用固定基准时间（landmark）：写入时加exp((t - landmark) / τ)，
+ * 各文章同比例衰减不影响排序；指数过大时把整个有序集合乘以exp(-(now - landmark) / τ)并前移基准时间。
+ * 阅读先在内存中累加，定时批量写入Redis有序集合，再把各窗口的前K名读回本地，接口直接返回本地快照。
+ */
+@Slf4j
+@Service
+public class TrendingService {
+
+    private static final String TRENDING_PREFIX = "TRENDING_";
+    private static final String TRENDING_LANDMARK_PREFIX = "TRENDING_LANDMARK_";
+    private static final int PUBLISHED = 1;
+    // 指数超过该值时重新设定基准时间，保证分数不会溢出
+    private static final int RESCALE_EXPONENT = 10;
+
+    // 批量累加分数；超过阈值时先整体缩放并前移基准时间；只保留前maxSize名
+    private static final String FLUSH_SCRIPT =
+            "local now = tonumber(ARGV[1]) " +
+            "local tau = tonumber(ARGV[2]) " +
+            "local landmark = tonumber(redis.call('get', KEYS[2]) or '') " +
+            "if not landmark then landmark = now redis.call('set', KEYS[2], now) end " +
+            "if (now - landmark) / tau > tonumber(ARGV[4]) then " +
+            "  redis.call('zunionstore', KEYS[1], 1, KEYS[1], 'WEIGHTS', math.exp(-(now - landmark) / tau)) " +
+            "  landmark = now redis.call('set', KEYS[2], now) " +
+            "end " +
+            "local w = math.exp((now - landmark) / tau) " +
+            "for i = 5, #ARGV, 2 do redis.call('zincrby', KEYS[1], tonumber(ARGV[i + 1]) * w, ARGV[i]) end " +
+            "redis.call('zremrangebyrank', KEYS[1], 0, -(tonumber(ARGV[3]) + 1)) " +
+            "return 1";
+
+    public enum Window {
+        HOUR("1h", 3600),
+        DAY("24h", 86400),
+        WEEK("7d", 604800);
+
+        private final String label;
+        private final long seconds;
+
+        Window(String label, long seconds) {
+            this.label = label;
+            this.seconds = seconds;
+        }
+
+        public static Window of(String label) {
+            for (Window window : values()) {
+                if (window.label.equals(label)) {
+                    return window;
+                }
+            }
+            throw new BadRequestException(400, "不支持的时间窗口: " + label);
+        }
+    }
+
+    private final RedisUtil redisUtil;
+    private final ArticleMapper articleMapper;
+    private final boolean enabled;
+    private final int topK;
+    private final int maxSize;
+
+    private final ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // 各窗口的本地前K名快照，整体替换
+    private final Map<Window, List<Article>> snapshots = new EnumMap<>(Window.class);
+
+    public TrendingService(RedisUtil redisUtil,
+                           ArticleMapper articleMapper,
+                           @Value("${blog.trending.enabled:true}") boolean enabled,
+                           @Value("${blog.trending.top-k:50}") int topK,
+                           @Value("${blog.trending.max-size:1000}") int maxSize) {
+        this.redisUtil = redisUtil;
+        this.articleMapper = articleMapper;
+        this.enabled = enabled;
+        this.topK = topK;
+        this.maxSize = Math.max(maxSize, topK);
+        for (Window window : Window.values()) {
+            snapshots.put(window, List.of());
+        }
+    }
+
+    /**
+     * 记录一次阅读
+     */
+    public void record(Long aid) {
+        if (enabled) {
+            pending.computeIfAbsent(aid, _ -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * 指定窗口内的热门文章，直接返回本地快照
+     */
+    public List<Article> getTrending(String window, int count) {
+        if (count <= 0 || count > topK) {
+            throw new BadRequestException(400, "数量应在1到" + topK + "之间");
+        }
+        List<Article> top;
+        synchronized (snapshots) {
+            top = snapshots.get(Window.of(window));
+        }
+        return top.size() <= count ? top : top.subList(0, count);
+    }
+
+    @Scheduled(fixedDelayString = "${blog.trending.flush-interval:10000}")
+    public void flushAndRefresh() {
+        if (!enabled || !flushLock.tryLock()) {
+            return;
+        }
+        try {
+            flush();
+            refresh();
+        } catch (Exception e) {
+            log.error("更新热门文章排行失败", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("关闭前写入热门文章分数失败", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> views = new HashMap<>();
+        // 计数器留在表中，sumThenReset取走计数，期间的并发累加要么被本轮取走，要么留到下一轮
+        pending.forEach((aid, adder) -> {
+            long count = adder.sumThenReset();
+            if (count > 0) {
+                views.put(aid, count);
+            }
+        });
+        if (views.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        for (Window window : Window.values()) {
+            List<Object> args = new ArrayList<>(4 + views.size() * 2);
+            args.add(now);
+            args.add(window.seconds);
+            args.add(maxSize);
+            args.add(RESCALE_EXPONENT);
+            views.forEach((aid, count) -> {
+                args.add(aid);
+                args.add(count);
+            });
+            try {
+                redisUtil.executeScript(FLUSH_SCRIPT, Long.class,
+                        List.of(TRENDING_PREFIX + window.label, TRENDING_LANDMARK_PREFIX + window.label), args.toArray());
+            } catch (Exception e) {
+                // 排行允许少量误差，失败的增量不再重试
+                log.warn("写入热门文章分数失败，窗口: {}，文章数: {}", window.label, views.size(), e);
+            }
+        }
+    }
+
+    // 从Redis读取各窗口前列的文章，过滤掉未发布的文章后替换本地快照
+    private void refresh() {
+        Map<Window, List<Long>> ranked = new EnumMap<>(Window.class);
+        Set<Long> all = new HashSet<>();
+        for (Window window : Window.values()) {
+            List<Long> aids = new ArrayList<>();
+            Set<ZSetOperations.TypedTuple<Object>> tuples =
+                    redisUtil.zRevRangeWithScores(TRENDING_PREFIX + window.label, 0, topK * 2L - 1);
+            if (tuples != null) {
+                for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+                    if (tuple.getValue() instanceof Number aid) {
+                        aids.add(aid.longValue());
+                    }
+                }
+            }
+            ranked.put(window, aids);
+            all.addAll(aids);
+        }
+        Map<Long, Article> byId = new HashMap<>();
+        if (!all.isEmpty()) {
+            for (Article article : articleMapper.getArticleListByIds(new ArrayList<>(all))) {
+                byId.put(article.getId(), article);
+            }
+        }
+        Map<Window, List<Article>> fresh = new EnumMap<>(Window.class);
+        for (Map.Entry<Window, List<Long>> entry : ranked.entrySet()) {
+            List<Article> top = new ArrayList<>(topK);
+            for (Long aid : entry.getValue()) {
+                Article article = byId.get(aid);
+                if (article != null && Objects.equals(article.getState(), PUBLISHED)) {
+                    top.add(article);
+                    if (top.size() == topK) {
+                        break;
+                    }
+                }
+            }
+            fresh.put(entry.getKey(), Collections.unmodifiableList(top));
+        }
+        synchronized (snapshots) {
+            snapshots.putAll(fresh);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.service;
+
+import com.example.common.utils.RedisUtil;
+import com.example.entity.Article;
+import com.example.entity.PvRollup;
+import com.example.mapper.ArticleMapper;
+import com.example.mapper.PvRollupMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 独立访客统计
+ * 按文章和作者分别为每天建立一个HyperLogLog，无论访问量多大每个key最多约12KB，误差约0.81%。
+ * 访客先在内存中按(日期, 文章)去重，定时以管道方式批量PFADD；每天零点把前一天各作者的独立访客数写入按天的浏览量汇总。
+ */
+@Slf4j
+@Service
+public class UniqueVisitorService {
+
+    private static final String UV_ARTICLE_PREFIX = "UV_A_";
+    private static final String UV_USER_PREFIX = "UV_U_";
+    // 当天有访客的作者，每日统计时只需统计这些作者
+    private static final String UV_AUTHORS_PREFIX = "UV_AUTHORS_";
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final int BATCH_SIZE = 500;
+
+    private record Bucket(LocalDate day, Long id) {
+    }
+
+    private final RedisUtil redisUtil;
+    private final ArticleMapper articleMapper;
+    private final PvRollupMapper rollupMapper;
+    private final boolean enabled;
+    private final int retentionDays;
+
+    private final ConcurrentHashMap<Bucket, Set<String>> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public UniqueVisitorService(RedisUtil redisUtil,
+                                ArticleMapper articleMapper,
+                                PvRollupMapper rollupMapper,
+                                @Value("${blog.uv.enabled:true}") boolean enabled,
+                                @Value("${blog.uv.retention-days:8}") int retentionDays) {
+        this.redisUtil = redisUtil;
+        this.articleMapper = articleMapper;
+        this.rollupMapper = rollupMapper;
+        this.enabled = enabled;
+        this.retentionDays = Math.max(2, retentionDays);
+    }
+
+    /**
+     * 记录一次访问
+     *
+     * @param visitor 访客标识，为null时不计入
+     */
+    public void record(Long aid, String visitor) {
+        if (!enabled || visitor == null) {
+            return;
+        }
+        // compute与写出时的remove互斥，取走后的集合不会再被修改
+        pending.compute(new Bucket(LocalDate.now(), aid), (_, visitors) -> {
+            Set<String> set = visitors == null ? new HashSet<>() : visitors;
+            set.add(visitor);
+            return set;
+        });
+    }
+
+    /**
+     * 文章最近几天每天的独立访客数，按日期升序，包含今天
+     */
+    public Map<String, Long> getArticleVisitors(Long aid, int days) {
+        int n = Math.min(days, retentionDays);
+        LocalDate today = LocalDate.now();
+        List<LocalDate> dates = new ArrayList<>(n);
+        for (int i = n - 1; i >= 0; i--) {
+            dates.add(today.minusDays(i));
+        }
+        List<Object> counts = redisUtil.executePipelined(ops ->
+                dates.forEach(date -> ops.opsForHyperLogLog().size(UV_ARTICLE_PREFIX + aid + "_" + DAY.format(date))));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            result.put(dates.get(i).toString(), counts.get(i) instanceof Number count ? count.longValue() : 0L);
+        }
+        return result;
+    }
+
+    /**
+     * 作者指定日期的独立访客数，尚未写出的访客不计入
+     */
+    public long countAuthorVisitors(Long uid, LocalDate date) {
+        if (!enabled) {
+            return 0;
+        }
+        Long count = redisUtil.pfCount(UV_USER_PREFIX + uid + "_" + DAY.format(date));
+        return count == null ? 0 : count;
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    @Scheduled(fixedDelayString = "${blog.uv.flush-interval:10000}")
+    public void flush() {
+        if (!enabled || !flushLock.tryLock()) {
+            return;
+        }
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 等待进行中的写出结束后再完整写出一次，用于每日统计前和应用关闭时
+     */
+    public void flushAll() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushAll();
+    }
+
+    /**
+     * 把前一天各作者的独立访客数写入作者按天的浏览量汇总
+     */
+    public void uvStatisticsPerDay() {
+        if (!enabled) {
+            return;
+        }
+        flushAll();
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Timestamp bucket = Timestamp.valueOf(yesterday.atStartOfDay());
+        String day = DAY.format(yesterday);
+        Set<Object> members = redisUtil.sMembers(UV_AUTHORS_PREFIX + day);
+        if (members == null || members.isEmpty()) {
+            return;
+        }
+        List<Long> uids = new ArrayList<>(members.size());
+        for (Object member : members) {
+            if (member instanceof Number uid) {
+                uids.add(uid.longValue());
+            }
+        }
+        for (int i = 0; i < uids.size(); i += BATCH_SIZE) {
+            List<Long> batch = uids.subList(i, Math.min(i + BATCH_SIZE, uids.size()));
+            List<Object> counts = redisUtil.executePipelined(ops ->
+                    batch.forEach(uid -> ops.opsForHyperLogLog().size(UV_USER_PREFIX + uid + "_" + day)));
+            List<PvRollup> uvs = new ArrayList<>(batch.size());
+            for (int j = 0; j < batch.size(); j++) {
+                long uv = counts.get(j) instanceof Number count ? count.longValue() : 0L;
+                uvs.add(new PvRollup(batch.get(j), PvRollup.DAY, bucket, 0L, uv));
+            }
+            rollupMapper.saveUserUv(uvs);
+        }
+        log.info("每日独立访客统计完成，日期: {}，作者数: {}", day, uids.size());
+    }
+
+    private void doFlush() {
+        Map<Bucket, Set<String>> byArticle = new HashMap<>();
+        for (Bucket bucket : new ArrayList<>(pending.keySet())) {
+            Set<String> visitors = pending.remove(bucket);
+            if (visitors != null) {
+                byArticle.put(bucket, visitors);
+            }
+        }
+        if (byArticle.isEmpty()) {
+            return;
+        }
+        try {
+            // 同一作者同一天的访客先在本地合并，减少写入的元素数
+            Map<Long, Long> authors = loadAuthors(byArticle.keySet());
+            Map<Bucket, Set<String>> byAuthor = new HashMap<>();
+            byArticle.forEach((bucket, visitors) -> {
+                Long uid = authors.get(bucket.id());
+                if (uid != null) {
+                    byAuthor.computeIfAbsent(new Bucket(bucket.day(), uid), _ -> new HashSet<>()).addAll(visitors);
+                }
+            });
+            redisUtil.executePipelined(ops -> {
+                byArticle.forEach((bucket, visitors) -> {
+                    String key = UV_ARTICLE_PREFIX + bucket.id() + "_" + DAY.format(bucket.day());
+                    ops.opsForHyperLogLog().add(key, visitors.toArray());
+                    ops.expire(key, retentionDays, TimeUnit.DAYS);
+                });
+                byAuthor.forEach((bucket, visitors) -> {
+                    String day = DAY.format(bucket.day());
+                    String key = UV_USER_PREFIX + bucket.id() + "_" + day;
+                    ops.opsForHyperLogLog().add(key, visitors.toArray());
+                    ops.expire(key, retentionDays, TimeUnit.DAYS);
+                    ops.opsForSet().add(UV_AUTHORS_PREFIX + day, bucket.id());
+                    ops.expire(UV_AUTHORS_PREFIX + day, retentionDays, TimeUnit.DAYS);
+                });
+            });
+        } catch (Exception e) {
+            // PFADD重复添加不影响结果，失败时整批还回，下一轮重试
+            log.error("写入独立访客失败，将在下次重试，文章数: {}", byArticle.size(), e);
+            byArticle.forEach((bucket, visitors) -> pending.merge(bucket, visitors, (current, failed) -> {
+                current.addAll(failed);
+                return current;
+            }));
+        }
+    }
+
+    private Map<Long, Long> loadAuthors(Set<Bucket> buckets) {
+        List<Long> aids = buckets.stream().map(Bucket::id).distinct().toList();
+        Map<Long, Long> authors = new HashMap<>();
+        for (int i = 0; i < aids.size(); i += BATCH_SIZE) {
+            for (Article article : articleMapper.getArticleOwners(aids.subList(i, Math.min(i + BATCH_SIZE, aids.size())))) {
+                authors.put(article.getId(), article.getUid());
+            }
+        }
+        return authors;
+    }
+}
@@ -6,6 +6,7 @@ import com.example.entity.Role;
 import com.example.entity.User;
 import com.example.mapper.RoleMapper;
 import com.example.mapper.UserMapper;
+import com.example.common.utils.RedisUtil;
 import com.example.common.utils.Util;
 import com.example.security.SaltyPasswordEncoder;
 import lombok.extern.slf4j.Slf4j;
@@ -13,7 +14,10 @@ import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 
@@ -21,14 +25,25 @@ import java.util.List;
 @Service
 @Transactional
 public class UserService implements UserDetailsService {
+    // 用户的认证版本号缓存，禁用、删除、修改角色或密码时加一，之前签发的Token随之失效
+    private static final String AUTH_VERSION_PREFIX = "AUTH_VER_";
+    // 已删除用户的版本号，任何Token都不会与之相等
+    private static final long DELETED_AUTH_VERSION = Long.MAX_VALUE;
+    private static final String CACHE_AUTH_VERSION_SCRIPT =
+            "local current = redis.call('get', KEYS[1]) " +
+            "if not current or tonumber(current) < tonumber(ARGV[1]) then redis.call('set', KEYS[1], ARGV[1]) end " +
+            "return 1";
+
     final UserMapper userMapper;
     final RoleMapper rolesMapper;
     final SaltyPasswordEncoder passwordEncoder;
+    final RedisUtil redisUtil;
 
-    public UserService(UserMapper userMapper, RoleMapper rolesMapper, SaltyPasswordEncoder passwordEncoder) {
+    public UserService(UserMapper userMapper, RoleMapper rolesMapper, SaltyPasswordEncoder passwordEncoder, RedisUtil redisUtil) {
         this.userMapper = userMapper;
         this.rolesMapper = rolesMapper;
         this.passwordEncoder = passwordEncoder;
+        this.redisUtil = redisUtil;
     }
 
     @Override
@@ -106,6 +121,10 @@ public class UserService implements UserDetailsService {
             log.error("密码更新失败：email={}",  email);
             throw new BusinessException(5002,"密码更新失败");
         }
+        User user = userMapper.getUserByEmail(email);
+        if (user != null) {
+            bumpAuthVersion(user.getId());
+        }
     }
 
     public User getUserByEmail(String email) {
@@ -124,18 +143,72 @@ public class UserService implements UserDetailsService {
     }
 
     public int updateUserEnabled(Boolean enabled, Long uid) {
-        return userMapper.updateUserEnabled(enabled, uid);
+        int rows = userMapper.updateUserEnabled(enabled, uid);
+        bumpAuthVersion(uid);
+        return rows;
     }
 
     public int deleteUserById(Long uid) {
-        return userMapper.deleteUserById(uid);
+        int rows = userMapper.deleteUserById(uid);
+        bumpAuthVersion(uid);
+        return rows;
     }
 
     public int updateUserRoles(Long[] rids, Long id) {
-        return userMapper.setUserRoles(rids, id);
+        int rows = userMapper.setUserRoles(rids, id);
+        bumpAuthVersion(id);
+        return rows;
     }
 
     public User getUserById(Long id) {
         return userMapper.getUserById(id);
     }
+
+    /**
+     * 用户当前的认证版本号，以user表为准，Redis中只是缓存
+     * Redis中没有时从数据库读取并写回，因此缓存丢失不会让已失效的Token重新生效
+     *
+     * 每个已认证请求都会调用，不开启事务，Redis命中时不占用数据库连接
+     *
+     * @return 用户不存在时返回null
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Long getAuthVersion(Long uid) {
+        String key = AUTH_VERSION_PREFIX + uid;
+        if (redisUtil.get(key) instanceof Number version) {
+            return version.longValue();
+        }
+        Long version = userMapper.getAuthVersion(uid);
+        if (version != null) {
+            cacheAuthVersion(key, version);
+        }
+        return version;
+    }
+
+    // 数据库中加一随事务提交，提交后再刷新缓存，避免在提交前用旧的角色按新版本号签发Token
+    private void bumpAuthVersion(Long uid) {
+        userMapper.incrementAuthVersion(uid);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refreshAuthVersion(uid);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refreshAuthVersion(uid);
+            }
+        });
+    }
+
+    private void refreshAuthVersion(Long uid) {
+        String key = AUTH_VERSION_PREFIX + uid;
+        Long version = userMapper.getAuthVersion(uid);
+        // 用户已删除时写入最大值，不能删除缓存：并发的回填可能把删除前读到的版本号写回
+        cacheAuthVersion(key, version == null ? DELETED_AUTH_VERSION : version);
+    }
+
+    // 只增不减：并发的缓存回填和版本号刷新无论先后，缓存最终都是最大的版本号
+    private void cacheAuthVersion(String key, long version) {
+        redisUtil.executeScript(CACHE_AUTH_VERSION_SCRIPT, Long.class, List.of(key), version);
+    }
 }
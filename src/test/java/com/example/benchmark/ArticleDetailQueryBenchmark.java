@@ -0,0 +1,86 @@
+package com.example.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文章详情查询的开销
+ * joined为改动前连接article_tags和tags的查询，正文随标签数重复返回；split为文章单行查询加标签ID查询。
+ * 需要可连接的MySQL，连接参数通过系统属性bench.db.url、bench.db.user、bench.db.password指定，
+ * bench.aid为用于测试的文章ID，应选择标签较多、正文较长的文章。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ArticleDetailQueryBenchmark {
+
+    private static final String JOINED_SQL = "SELECT a.*,t.`tagName`,t.`id` AS tid,c.`cateName` FROM article a " +
+            "LEFT JOIN article_tags ats ON a.`id`=ats.`aid` LEFT JOIN tags t ON ats.`tid`=t.`id` " +
+            "LEFT JOIN user u ON a.`uid`=u.`id` LEFT JOIN category c ON a.`cid`=c.`id` WHERE a.id=?";
+    private static final String ARTICLE_SQL = "SELECT a.*,c.`cateName` FROM article a LEFT JOIN category c ON a.`cid`=c.`id` WHERE a.id=?";
+    private static final String TAG_IDS_SQL = "SELECT tid FROM article_tags WHERE aid=?";
+
+    private Connection connection;
+    private PreparedStatement joined;
+    private PreparedStatement article;
+    private PreparedStatement tagIds;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.db.url", "jdbc:mysql://localhost:3306/sssblog?useUnicode=true&characterEncoding=UTF-8&serverTimezone=Asia/Shanghai"),
+                System.getProperty("bench.db.user", "root"),
+                System.getProperty("bench.db.password", System.getenv("DB_PASSWORD")));
+        long aid = Long.getLong("bench.aid", 1L);
+        joined = prepare(JOINED_SQL, aid);
+        article = prepare(ARTICLE_SQL, aid);
+        tagIds = prepare(TAG_IDS_SQL, aid);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public void joined(Blackhole bh) throws SQLException {
+        consume(joined, bh);
+    }
+
+    @Benchmark
+    public void split(Blackhole bh) throws SQLException {
+        consume(article, bh);
+        consume(tagIds, bh);
+    }
+
+    private PreparedStatement prepare(String sql, long aid) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setLong(1, aid);
+        return statement;
+    }
+
+    // 读出每一列，与MyBatis映射结果集时读取的数据量一致
+    private static void consume(PreparedStatement statement, Blackhole bh) throws SQLException {
+        try (ResultSet rs = statement.executeQuery()) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columns; i++) {
+                    bh.consume(rs.getObject(i));
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ArticleDetailQueryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
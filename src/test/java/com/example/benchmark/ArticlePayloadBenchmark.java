@@ -0,0 +1,96 @@
+package com.example.benchmark;
+
+import com.example.entity.Article;
+import com.example.entity.Tag;
+import com.example.service.ArticlePayloadCache;
+import com.example.service.ArticleService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 文章详情响应体的CPU开销
+ * perRequest为改动前每个请求序列化JSON并以默认级别gzip压缩（与Tomcat响应压缩相当），
+ * preEncoded为ArticlePayloadCache命中时按Accept-Encoding选出已编码的字节。
+ * size为正文（Markdown和HTML各一份）的大约字符数。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArticlePayloadBenchmark {
+
+    private static final String ACCEPT_ENCODING = "gzip, deflate, br";
+
+    @Param({"4096", "65536"})
+    private int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Article article;
+    private ArticlePayloadCache cache;
+
+    @Setup
+    public void setUp() {
+        StringBuilder md = new StringBuilder(size + 64);
+        StringBuilder html = new StringBuilder(size * 2 + 64);
+        for (int i = 0; md.length() < size; i++) {
+            md.append("## 第").append(i).append("节\n正文内容，包含**加粗**和[链接](https://example.com/").append(i).append(")。\n\n");
+            html.append("<h2>第").append(i).append("节</h2><p>正文内容，包含<strong>加粗</strong>和<a href=\"https://example.com/")
+                    .append(i).append("\">链接</a>。</p>");
+        }
+        article = new Article();
+        article.setId(1L);
+        article.setTitle("基准测试文章");
+        article.setMdContent(md.toString());
+        article.setHtmlContent(html.toString());
+        article.setSummary("正文内容，包含加粗和链接。");
+        article.setCid(1L);
+        article.setUid(1L);
+        article.setState(1);
+        article.setPageView(1024);
+        article.setEditTime(new Timestamp(System.currentTimeMillis()));
+        article.setPublishDate(article.getEditTime());
+        article.setCateName("默认分类");
+        article.setTags(List.of(new Tag(1L, "java"), new Tag(2L, "spring")));
+
+        ArticleService articleService = mock(ArticleService.class);
+        when(articleService.getArticleSnapshot(anyLong())).thenAnswer(_ -> article);
+        cache = new ArticlePayloadCache(articleService, objectMapper, true, 64L << 20, TimeUnit.HOURS.toSeconds(1));
+        cache.get(article.getId());
+    }
+
+    @Benchmark
+    public byte[] perRequest() throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(article);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(bos, 8192)) {
+            out.write(json);
+        }
+        return bos.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] preEncoded() {
+        ArticlePayloadCache.Payload payload = cache.get(article.getId());
+        return cache.chooseGzip(payload, ACCEPT_ENCODING) ? payload.gzip() : payload.identity();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ArticlePayloadBenchmark.class.getSimpleName()).build()).run();
+    }
+}
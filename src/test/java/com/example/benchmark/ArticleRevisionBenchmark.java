@@ -0,0 +1,154 @@
+package com.example.benchmark;
+
+import com.example.common.utils.BinaryDelta;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 历史版本的存储和耗时
+ * 模拟一篇文章连续编辑CHAIN_LENGTH次，每次修改几处片段：
+ * snapshot为每个版本保存完整快照（deflate），delta为保存相对上一版本的差量（deflate），
+ * rebuildChain为从快照依次应用差量重建最新版本（保存时未命中进程内缓存的情况）。
+ * 结束时输出两种方式的存储字节数。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArticleRevisionBenchmark {
+
+    private static final int CHAIN_LENGTH = 20;
+
+    @Param({"8192", "65536"})
+    private int size;
+
+    private final List<byte[]> versions = new ArrayList<>();
+    private final List<byte[]> storedDeltas = new ArrayList<>();
+    private byte[] storedSnapshot;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(size);
+        byte[] current = text(random, size);
+        versions.add(current);
+        for (int i = 1; i < CHAIN_LENGTH; i++) {
+            current = edit(random, current);
+            versions.add(current);
+        }
+        storedSnapshot = deflate(versions.getFirst());
+        for (int i = 1; i < CHAIN_LENGTH; i++) {
+            storedDeltas.add(deflate(BinaryDelta.encode(versions.get(i - 1), versions.get(i))));
+        }
+    }
+
+    @TearDown
+    public void report() {
+        long snapshots = 0;
+        for (byte[] version : versions) {
+            snapshots += deflate(version).length;
+        }
+        long deltas = storedSnapshot.length;
+        for (byte[] delta : storedDeltas) {
+            deltas += delta.length;
+        }
+        System.out.printf("%n内容%d字节，%d个版本：全部快照%d字节，快照加差量%d字节（%.1f%%）%n",
+                versions.getFirst().length, CHAIN_LENGTH, snapshots, deltas, deltas * 100.0 / snapshots);
+    }
+
+    @Benchmark
+    public byte[] snapshot() {
+        return deflate(versions.getLast());
+    }
+
+    @Benchmark
+    public byte[] delta() {
+        return deflate(BinaryDelta.encode(versions.get(CHAIN_LENGTH - 2), versions.getLast()));
+    }
+
+    @Benchmark
+    public byte[] rebuildChain() {
+        byte[] content = inflate(storedSnapshot);
+        for (byte[] delta : storedDeltas) {
+            content = BinaryDelta.apply(content, inflate(delta));
+        }
+        return content;
+    }
+
+    // 每个版本在随机位置插入、删除或替换几处片段
+    private static byte[] edit(Random random, byte[] source) {
+        byte[] current = source;
+        int edits = 1 + random.nextInt(5);
+        for (int i = 0; i < edits; i++) {
+            int pos = random.nextInt(current.length + 1);
+            int remove = Math.min(current.length - pos, random.nextInt(120));
+            byte[] insert = text(random, random.nextInt(160));
+            ByteArrayOutputStream out = new ByteArrayOutputStream(current.length + insert.length);
+            out.write(current, 0, pos);
+            out.writeBytes(insert);
+            out.write(current, pos + remove, current.length - pos - remove);
+            current = out.toByteArray();
+        }
+        return current;
+    }
+
+    private static byte[] text(Random random, int length) {
+        String[] words = {"文章", "正文", "历史版本", "Java", "Spring", " ", "\n", "## ", "`code`", "，", "。", "delta", "snapshot"};
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append(words[random.nextInt(words.length)]);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 与ArticleRevisionService相同的压缩参数
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                out.write(buffer, 0, inflater.inflate(buffer));
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ArticleRevisionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
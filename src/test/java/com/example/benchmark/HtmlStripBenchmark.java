@@ -0,0 +1,64 @@
+package com.example.benchmark;
+
+import com.example.common.utils.HtmlUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 提取HTML文本的开销
+ * regex为改动前连续三次replaceAll的写法，stripHtml为单遍扫描提取全文，summary为保存文章时提取50字摘要。
+ * size为生成的HTML的大约字符数。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HtmlStripBenchmark {
+
+    @Param({"4096", "65536", "524288"})
+    private int size;
+
+    private String html;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder(size + 256);
+        int i = 0;
+        while (sb.length() < size) {
+            switch (i++ % 4) {
+                case 0 -> sb.append("<h2 id=\"s").append(i).append("\">第").append(i).append("节</h2>");
+                case 1 -> sb.append("<p class=\"text\">正文内容，包含<strong>加粗</strong>、<a href=\"https://example.com/?a=1&amp;b=2\">链接</a>和&ldquo;实体&rdquo;。<br/></p>");
+                case 2 -> sb.append("<pre><code class=\"language-java\">if (a &lt; b) { return a; }</code></pre>");
+                default -> sb.append("<!-- 注释 --><p>Plain text paragraph with some English words.</p>");
+            }
+        }
+        html = sb.toString();
+    }
+
+    @Benchmark
+    public String regex() {
+        return html.replaceAll("<p .*?>", "")
+                .replaceAll("<br\\s*/?>", "")
+                .replaceAll("<.*?>", "");
+    }
+
+    @Benchmark
+    public String stripHtml() {
+        return HtmlUtil.stripHtml(html);
+    }
+
+    @Benchmark
+    public String summary() {
+        return HtmlUtil.extractText(html, 50);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HtmlStripBenchmark.class.getSimpleName()).build()).run();
+    }
+}
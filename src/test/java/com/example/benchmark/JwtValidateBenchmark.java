@@ -0,0 +1,75 @@
+package com.example.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.common.utils.JwtTokenUtil;
+import com.example.entity.Role;
+import com.example.entity.User;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token验证的开销
+ * newVerifier为改动前每次请求创建算法和验证器的写法，sharedVerifier为共用验证器，
+ * cachedHit为JwtTokenUtil.validateToken命中已验证缓存的情况。
+ * 前两者使用基准测试自己的密钥签发声明相同的Token，签名验证的开销与实际一致。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtValidateBenchmark {
+
+    private static final String SECRET = "benchmark-secret";
+
+    private final Algorithm algorithm = Algorithm.HMAC256(SECRET);
+    private final JWTVerifier verifier = JWT.require(algorithm).build();
+    private String token;
+    private String appToken;
+
+    @Setup
+    public void setUp() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("benchmark");
+        user.setRoles(List.of(new Role(1L, "ROLE_admin")));
+        appToken = JwtTokenUtil.generateToken(user, 1);
+        token = JWT.create()
+                .withSubject(user.getUsername())
+                .withClaim("uid", user.getId())
+                .withClaim("roles", List.of("ROLE_admin"))
+                .withClaim("ver", 1L)
+                .withExpiresAt(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .sign(algorithm);
+        JwtTokenUtil.validateToken(appToken);
+    }
+
+    @Benchmark
+    public DecodedJWT newVerifier() {
+        return JWT.require(Algorithm.HMAC256(SECRET)).build().verify(token);
+    }
+
+    @Benchmark
+    public DecodedJWT sharedVerifier() {
+        return verifier.verify(token);
+    }
+
+    @Benchmark
+    public DecodedJWT cachedHit() {
+        return JwtTokenUtil.validateToken(appToken);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtValidateBenchmark.class.getSimpleName()).build()).run();
+    }
+}
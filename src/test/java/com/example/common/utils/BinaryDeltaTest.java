@@ -0,0 +1,109 @@
+package com.example.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 差量编码的往返测试：任意源内容和目标内容，apply(source, encode(source, target))都应还原出target
+ */
+class BinaryDeltaTest {
+
+    private static final long SEED = 20261017L;
+
+    @Test
+    void emptyAndIdentical() {
+        byte[] text = "# 标题\n正文内容".getBytes(StandardCharsets.UTF_8);
+        assertRoundTrip(new byte[0], new byte[0]);
+        assertRoundTrip(new byte[0], text);
+        assertRoundTrip(text, new byte[0]);
+        assertRoundTrip(text, text.clone());
+    }
+
+    @Test
+    void randomEditsRoundTrip() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < 500; i++) {
+            byte[] source = randomText(random, random.nextInt(20000));
+            byte[] target = edit(random, source, 1 + random.nextInt(20));
+            assertRoundTrip(source, target);
+        }
+    }
+
+    @Test
+    void unrelatedContentRoundTrip() {
+        Random random = new Random(SEED + 1);
+        for (int i = 0; i < 100; i++) {
+            byte[] source = new byte[random.nextInt(5000)];
+            byte[] target = new byte[random.nextInt(5000)];
+            random.nextBytes(source);
+            random.nextBytes(target);
+            assertRoundTrip(source, target);
+        }
+    }
+
+    // 内容重复度高（哈希冲突多）时仍能正确还原
+    @Test
+    void repetitiveContentRoundTrip() {
+        Random random = new Random(SEED + 2);
+        for (int i = 0; i < 100; i++) {
+            byte[] source = repeat("abcdefgh".getBytes(StandardCharsets.UTF_8), random.nextInt(3000));
+            byte[] target = edit(random, source, 1 + random.nextInt(10));
+            assertRoundTrip(source, target);
+        }
+    }
+
+    @Test
+    void smallEditProducesSmallDelta() {
+        Random random = new Random(SEED + 3);
+        byte[] source = randomText(random, 100_000);
+        byte[] target = source.clone();
+        target[50_000] ^= 1;
+        byte[] delta = BinaryDelta.encode(source, target);
+        assertArrayEquals(target, BinaryDelta.apply(source, delta));
+        assertTrue(delta.length < 200, "单字节修改的差量过大: " + delta.length);
+    }
+
+    private static void assertRoundTrip(byte[] source, byte[] target) {
+        byte[] delta = BinaryDelta.encode(source, target);
+        assertArrayEquals(target, BinaryDelta.apply(source, delta));
+    }
+
+    // 模拟文章编辑：随机插入、删除、替换若干片段
+    private static byte[] edit(Random random, byte[] source, int edits) {
+        byte[] current = source;
+        for (int i = 0; i < edits; i++) {
+            int pos = current.length == 0 ? 0 : random.nextInt(current.length + 1);
+            int remove = Math.min(current.length - pos, random.nextInt(200));
+            byte[] insert = random.nextInt(3) == 0 ? new byte[0] : randomText(random, random.nextInt(300));
+            ByteArrayOutputStream out = new ByteArrayOutputStream(current.length + insert.length);
+            out.write(current, 0, pos);
+            out.writeBytes(insert);
+            out.write(current, pos + remove, current.length - pos - remove);
+            current = out.toByteArray();
+        }
+        return current;
+    }
+
+    private static byte[] randomText(Random random, int length) {
+        String[] words = {"文章", "正文", "Java", "Spring", " ", "\n", "## ", "`code`", "，", "。", "the", "delta"};
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append(words[random.nextInt(words.length)]);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] repeat(byte[] unit, int times) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(unit.length * times);
+        for (int i = 0; i < times; i++) {
+            out.writeBytes(unit);
+        }
+        return out.toByteArray();
+    }
+}
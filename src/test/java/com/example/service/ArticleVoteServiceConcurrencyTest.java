@@ -0,0 +1,166 @@
+package com.example.service;
+
+import com.example.common.configs.RedisConfig;
+import com.example.common.utils.RedisUtil;
+import com.example.entity.ArticleVote;
+import com.example.entity.User;
+import com.example.mapper.ArticleMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 同一篇文章的大量并发投票压力测试
+ * 直接使用Redis执行投票脚本，未连接到Redis时跳过；连接参数可通过redis.host、redis.port、redis.password系统属性指定
+ */
+class ArticleVoteServiceConcurrencyTest {
+
+    private static final int USERS = 500;
+    private static final int VOTES = 5000;
+    private static final int THREADS = 64;
+
+    private LettuceConnectionFactory factory;
+    private RedisTemplate<String, Object> redisTemplate;
+    private ArticleVoteService voteService;
+    private Long aid;
+
+    @BeforeEach
+    void setUp() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("redis.host", "localhost"),
+                Integer.parseInt(System.getProperty("redis.port", "6379")));
+        configuration.setPassword(System.getProperty("redis.password", "123456"));
+        factory = new LettuceConnectionFactory(configuration);
+        factory.afterPropertiesSet();
+        try {
+            factory.getConnection().close();
+        } catch (Exception e) {
+            factory.destroy();
+            factory = null;
+            Assumptions.abort("未连接到Redis，跳过投票并发测试: " + e.getMessage());
+        }
+        redisTemplate = new RedisConfig().redisTemplate(factory);
+
+        // 使用不会与真实数据冲突的文章ID，初始赞踩数为0
+        aid = 9_000_000_000L + ThreadLocalRandom.current().nextInt(1_000_000);
+        ArticleMapper articleMapper = mock(ArticleMapper.class);
+        when(articleMapper.getVoteCounts(anyLong())).thenReturn(new ArticleVote(aid, 0, 0, 0));
+        voteService = new ArticleVoteService(new RedisUtil(redisTemplate), articleMapper);
+        cleanUp();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (factory == null) {
+            return;
+        }
+        cleanUp();
+        factory.destroy();
+    }
+
+    /**
+     * 随机赞、踩、取消，同一用户的投票也会并发到达；结束后投票记录中赞和踩的人数必须与计数一致
+     */
+    @Test
+    void concurrentMixedVotesKeepCountersConsistent() throws Exception {
+        runConcurrently(VOTES, i -> {
+            int value = ThreadLocalRandom.current().nextInt(3) - 1;
+            voteService.vote(aid, value);
+        });
+
+        Map<Object, Object> votes = redisTemplate.opsForHash().entries("VOTE_" + aid);
+        long likes = votes.values().stream().filter(v -> ((Number) v).intValue() == ArticleVote.LIKE).count();
+        long dislikes = votes.values().stream().filter(v -> ((Number) v).intValue() == ArticleVote.DISLIKE).count();
+        assertEquals(votes.size(), likes + dislikes, "投票记录中只能有1或-1");
+        assertTrue(votes.size() <= USERS);
+
+        ArticleVote counts = readCounts();
+        assertEquals(likes, counts.getLikeCount().longValue(), "赞数与投票记录不一致");
+        assertEquals(dislikes, counts.getDislikeCount().longValue(), "踩数与投票记录不一致");
+    }
+
+    /**
+     * 每个用户并发点赞3次：重复投同一票为取消，无论到达顺序如何最终都应是赞
+     */
+    @Test
+    void concurrentRepeatedLikesToggleToExpectedState() throws Exception {
+        runConcurrently(USERS * 3, _ -> voteService.vote(aid, ArticleVote.LIKE));
+
+        Map<Object, Object> votes = redisTemplate.opsForHash().entries("VOTE_" + aid);
+        assertEquals(USERS, votes.size());
+        assertTrue(votes.values().stream().allMatch(v -> ((Number) v).intValue() == ArticleVote.LIKE));
+
+        ArticleVote counts = readCounts();
+        assertEquals(USERS, counts.getLikeCount());
+        assertEquals(0, counts.getDislikeCount());
+    }
+
+    // 第i次投票以用户i % USERS的身份执行，所有任务就绪后同时开始
+    private void runConcurrently(int total, VoteTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(total);
+        try {
+            for (int i = 0; i < total; i++) {
+                int index = i;
+                User user = new User();
+                user.setId((long) (index % USERS) + 1);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    SecurityContextHolder.getContext().setAuthentication(
+                            new UsernamePasswordAuthenticationToken(user, null, List.of()));
+                    try {
+                        task.run(index);
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ArticleVote readCounts() {
+        Map<Object, Object> counts = redisTemplate.opsForHash().entries("VOTE_COUNT_" + aid);
+        return new ArticleVote(aid, ArticleVote.NONE,
+                ((Number) counts.get("like")).intValue(), ((Number) counts.get("dislike")).intValue());
+    }
+
+    private void cleanUp() {
+        redisTemplate.delete(List.of("VOTE_" + aid, "VOTE_COUNT_" + aid));
+        redisTemplate.opsForSet().remove("VOTE_DIRTY", aid);
+    }
+
+    @FunctionalInterface
+    private interface VoteTask {
+        void run(int index) throws Exception;
+    }
+}